@@ -3,18 +3,25 @@ package com.example.ttsserver.api.asr;
 import com.example.ttsserver.config.CompatProperties;
 import com.example.ttsserver.error.ApiException;
 import com.example.ttsserver.service.AsrService;
+import com.example.ttsserver.service.TranscriptionJob;
+import com.example.ttsserver.service.TranscriptionJobService;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Set;
 
 @Validated
@@ -22,13 +29,18 @@ import java.util.Set;
 @RequestMapping("/v1/audio")
 public class AsrController {
 
-    private static final Set<String> SUPPORTED_FIELDS = Set.of("file", "model", "language", "response_format");
+    private static final Set<String> SUPPORTED_FIELDS = Set.of("file", "model", "language", "response_format", "split_channels");
+    private static final Set<String> SUPPORTED_JOB_FIELDS = Set.of("file", "model", "language", "callback_url");
 
     private final AsrService asrService;
+    private final TranscriptionJobService transcriptionJobService;
     private final CompatProperties compatProperties;
 
-    public AsrController(AsrService asrService, CompatProperties compatProperties) {
+    public AsrController(AsrService asrService,
+                         TranscriptionJobService transcriptionJobService,
+                         CompatProperties compatProperties) {
         this.asrService = asrService;
+        this.transcriptionJobService = transcriptionJobService;
         this.compatProperties = compatProperties;
     }
 
@@ -38,11 +50,61 @@ public class AsrController {
             @RequestParam("model") @NotBlank String model,
             @RequestParam(name = "language", required = false) String language,
             @RequestParam(name = "response_format", defaultValue = "json") String responseFormat,
+            @RequestParam(name = "split_channels", defaultValue = "false") boolean splitChannels,
             @RequestParam MultiValueMap<String, String> params
     ) {
+        rejectUnsupportedFields(params, SUPPORTED_FIELDS);
+        boolean text = "text".equalsIgnoreCase(responseFormat);
+        if (!text && !"json".equalsIgnoreCase(responseFormat)) {
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    "response_format must be json or text",
+                    "invalid_request_error",
+                    "response_format",
+                    "validation_error");
+        }
+
+        TranscriptionResponse response = splitChannels
+                ? TranscriptionResponse.ofChannels(asrService.transcribeChannels(file, language))
+                : new TranscriptionResponse(asrService.transcribe(file, language));
+        if (text) {
+            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(response.text());
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(path = "/transcriptions/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<TranscriptionJobResponse> createTranscriptionJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("model") @NotBlank String model,
+            @RequestParam(name = "language", required = false) String language,
+            @RequestParam(name = "callback_url", required = false) String callbackUrl,
+            @RequestParam MultiValueMap<String, String> params
+    ) {
+        rejectUnsupportedFields(params, SUPPORTED_JOB_FIELDS);
+
+        TranscriptionJob job = transcriptionJobService.submit(file, language, parseCallbackUrl(callbackUrl));
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(job.id())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(TranscriptionJobResponse.from(job));
+    }
+
+    @GetMapping("/transcriptions/jobs/{id}")
+    public TranscriptionJobResponse transcriptionJob(@PathVariable String id) {
+        return transcriptionJobService.find(id)
+                .map(TranscriptionJobResponse::from)
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND,
+                        "Transcription job not found: " + id,
+                        "invalid_request_error",
+                        "id",
+                        "not_found"));
+    }
+
+    private void rejectUnsupportedFields(MultiValueMap<String, String> params, Set<String> supportedFields) {
         if (compatProperties.isStrict()) {
             params.keySet().stream()
-                    .filter(key -> !SUPPORTED_FIELDS.contains(key))
+                    .filter(key -> !supportedFields.contains(key))
                     .findFirst()
                     .ifPresent(key -> {
                         throw new ApiException(HttpStatus.BAD_REQUEST,
@@ -52,18 +114,24 @@ public class AsrController {
                                 "unsupported_field");
                     });
         }
+    }
 
-        String text = asrService.transcribe(file, language);
-        if ("text".equalsIgnoreCase(responseFormat)) {
-            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(text);
+    private URI parseCallbackUrl(String callbackUrl) {
+        if (callbackUrl == null || callbackUrl.isBlank()) {
+            return null;
         }
-        if (!"json".equalsIgnoreCase(responseFormat)) {
-            throw new ApiException(HttpStatus.BAD_REQUEST,
-                    "response_format must be json or text",
-                    "invalid_request_error",
-                    "response_format",
-                    "validation_error");
+        try {
+            URI uri = new URI(callbackUrl.trim());
+            String scheme = uri.getScheme();
+            if (uri.getHost() != null && ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                return uri;
+            }
+        } catch (URISyntaxException ignored) {
         }
-        return ResponseEntity.ok(new TranscriptionResponse(text));
+        throw new ApiException(HttpStatus.BAD_REQUEST,
+                "callback_url must be an absolute http or https URL",
+                "invalid_request_error",
+                "callback_url",
+                "validation_error");
     }
 }
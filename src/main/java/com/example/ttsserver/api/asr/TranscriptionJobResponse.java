@@ -0,0 +1,35 @@
+package com.example.ttsserver.api.asr;
+
+import com.example.ttsserver.api.common.OpenAiErrorResponse;
+import com.example.ttsserver.error.ApiException;
+import com.example.ttsserver.service.TranscriptionJob;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Locale;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TranscriptionJobResponse(
+        String id,
+        String object,
+        String status,
+        long created_at,
+        Long completed_at,
+        String text,
+        OpenAiErrorResponse.ErrorBody error
+) {
+
+    public static TranscriptionJobResponse from(TranscriptionJob job) {
+        ApiException error = job.error();
+        return new TranscriptionJobResponse(
+                job.id(),
+                "transcription.job",
+                job.status().name().toLowerCase(Locale.ROOT),
+                job.createdAt().getEpochSecond(),
+                job.completedAt() == null ? null : job.completedAt().getEpochSecond(),
+                job.text(),
+                error == null
+                        ? null
+                        : new OpenAiErrorResponse.ErrorBody(error.getMessage(), error.getType(), error.getParam(), error.getCode())
+        );
+    }
+}
@@ -1,4 +1,25 @@
 package com.example.ttsserver.api.asr;
 
-public record TranscriptionResponse(String text) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TranscriptionResponse(String text, List<ChannelTranscript> channels) {
+
+    public TranscriptionResponse(String text) {
+        this(text, null);
+    }
+
+    public static TranscriptionResponse ofChannels(List<String> texts) {
+        List<ChannelTranscript> channels = new ArrayList<>(texts.size());
+        for (int channel = 0; channel < texts.size(); channel++) {
+            channels.add(new ChannelTranscript(channel, texts.get(channel)));
+        }
+        return new TranscriptionResponse(String.join("\n", texts), List.copyOf(channels));
+    }
+
+    public record ChannelTranscript(int channel, String text) {
+    }
 }
@@ -0,0 +1,31 @@
+package com.example.ttsserver.api.asr;
+
+import com.example.ttsserver.api.common.OpenAiErrorResponse;
+import com.example.ttsserver.error.ApiException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TranscriptionStreamEvent(
+        String type,
+        Integer utterance,
+        String text,
+        OpenAiErrorResponse.ErrorBody error
+) {
+
+    public static TranscriptionStreamEvent partial(int utterance, String text) {
+        return new TranscriptionStreamEvent("transcript.partial", utterance, text, null);
+    }
+
+    public static TranscriptionStreamEvent finalText(int utterance, String text) {
+        return new TranscriptionStreamEvent("transcript.final", utterance, text, null);
+    }
+
+    public static TranscriptionStreamEvent error(ApiException error) {
+        return new TranscriptionStreamEvent("error", null, null,
+                new OpenAiErrorResponse.ErrorBody(error.getMessage(), error.getType(), error.getParam(), error.getCode()));
+    }
+
+    public static TranscriptionStreamEvent done() {
+        return new TranscriptionStreamEvent("done", null, null, null);
+    }
+}
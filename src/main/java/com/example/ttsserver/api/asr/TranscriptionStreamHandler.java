@@ -0,0 +1,189 @@
+package com.example.ttsserver.api.asr;
+
+import com.example.ttsserver.error.ApiException;
+import com.example.ttsserver.service.StreamingRecognizer;
+import com.example.ttsserver.service.StreamingTranscriptionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+@Component
+public class TranscriptionStreamHandler extends AbstractWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionStreamHandler.class);
+    private static final String SESSION_ATTRIBUTE = TranscriptionStreamHandler.class.getName() + ".session";
+    private static final String SENDER_ATTRIBUTE = TranscriptionStreamHandler.class.getName() + ".sender";
+    private static final int SEND_TIME_LIMIT_MILLIS = 10_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+
+    private final StreamingTranscriptionService streamingTranscriptionService;
+    private final ObjectMapper objectMapper;
+
+    public TranscriptionStreamHandler(StreamingTranscriptionService streamingTranscriptionService, ObjectMapper objectMapper) {
+        this.streamingTranscriptionService = streamingTranscriptionService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession webSocketSession) throws Exception {
+        WebSocketSession session = new ConcurrentWebSocketSessionDecorator(
+                webSocketSession, SEND_TIME_LIMIT_MILLIS, SEND_BUFFER_LIMIT_BYTES);
+        webSocketSession.getAttributes().put(SENDER_ATTRIBUTE, session);
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(webSocketSession.getUri()).build().getQueryParams();
+        try {
+            StreamingRecognizer.Session recognition = streamingTranscriptionService.open(
+                    params.getFirst("encoding"),
+                    intParam(params, "sample_rate", 16000),
+                    intParam(params, "channels", 1),
+                    params.getFirst("language"),
+                    new EventSender(session)
+            );
+            webSocketSession.getAttributes().put(SESSION_ATTRIBUTE, recognition);
+        } catch (ApiException ex) {
+            reject(session, ex);
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        StreamingRecognizer.Session recognition = recognition(session);
+        if (recognition == null) {
+            return;
+        }
+        ByteBuffer payload = message.getPayload();
+        if (payload.hasArray()) {
+            recognition.accept(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            recognition.accept(bytes, 0, bytes.length);
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        StreamingRecognizer.Session recognition = recognition(session);
+        if (recognition == null) {
+            return;
+        }
+        WebSocketSession sender = (WebSocketSession) session.getAttributes().get(SENDER_ATTRIBUTE);
+        try {
+            JsonNode event = objectMapper.readTree(message.getPayload());
+            if ("end".equals(event.path("type").asText())) {
+                recognition.finish();
+                return;
+            }
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    "Unsupported event type: " + event.path("type").asText(),
+                    "invalid_request_error",
+                    "type",
+                    "validation_error");
+        } catch (ApiException ex) {
+            reject(sender, ex);
+        } catch (JsonProcessingException ex) {
+            reject(sender, new ApiException(HttpStatus.BAD_REQUEST,
+                    "Text messages must be JSON events",
+                    "invalid_request_error",
+                    null,
+                    "invalid_json"));
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Streaming transcription transport error: {}", exception.toString());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        StreamingRecognizer.Session recognition = (StreamingRecognizer.Session) session.getAttributes().remove(SESSION_ATTRIBUTE);
+        if (recognition != null) {
+            recognition.close();
+        }
+    }
+
+    private StreamingRecognizer.Session recognition(WebSocketSession session) {
+        return (StreamingRecognizer.Session) session.getAttributes().get(SESSION_ATTRIBUTE);
+    }
+
+    private int intParam(MultiValueMap<String, String> params, String name, int defaultValue) {
+        String value = params.getFirst(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    name + " must be an integer",
+                    "invalid_request_error",
+                    name,
+                    "validation_error");
+        }
+    }
+
+    private void reject(WebSocketSession session, ApiException error) throws IOException {
+        send(session, TranscriptionStreamEvent.error(error));
+        session.close(CloseStatus.POLICY_VIOLATION);
+    }
+
+    private void send(WebSocketSession session, TranscriptionStreamEvent event) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Unable to send streaming transcription event type={}: {}", event.type(), ex.toString());
+        }
+    }
+
+    private final class EventSender implements StreamingRecognizer.Listener {
+
+        private final WebSocketSession session;
+
+        private EventSender(WebSocketSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void onPartial(int utterance, String text) {
+            send(session, TranscriptionStreamEvent.partial(utterance, text));
+        }
+
+        @Override
+        public void onFinal(int utterance, String text) {
+            send(session, TranscriptionStreamEvent.finalText(utterance, text));
+        }
+
+        @Override
+        public void onError(ApiException error) {
+            send(session, TranscriptionStreamEvent.error(error));
+        }
+
+        @Override
+        public void onComplete() {
+            send(session, TranscriptionStreamEvent.done());
+            try {
+                session.close(CloseStatus.NORMAL);
+            } catch (IOException ex) {
+                log.debug("Unable to close streaming transcription session: {}", ex.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.ttsserver.config;
+
+import com.example.ttsserver.service.RequestDeadline;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Map;
+
+class DeadlineAwareClientHttpRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private static final ThreadLocal<RequestDeadline.Registration> PENDING_REGISTRATION = new ThreadLocal<>();
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request;
+        try {
+            request = super.createRequest(uri, httpMethod);
+        } catch (IOException | RuntimeException ex) {
+            RequestDeadline.Registration registration = PENDING_REGISTRATION.get();
+            PENDING_REGISTRATION.remove();
+            if (registration != null) {
+                registration.close();
+            }
+            throw ex;
+        }
+        RequestDeadline.Registration registration = PENDING_REGISTRATION.get();
+        PENDING_REGISTRATION.remove();
+        return registration == null ? request : new CancellableRequest(request, registration);
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        RequestDeadline deadline = RequestDeadline.current();
+        if (!deadline.isBounded()) {
+            return;
+        }
+        if (deadline.isExpired()) {
+            throw new SocketTimeoutException("Request deadline exceeded");
+        }
+        connection.setConnectTimeout(bound(connection.getConnectTimeout(), deadline));
+        connection.setReadTimeout(bound(connection.getReadTimeout(), deadline));
+        PENDING_REGISTRATION.set(deadline.onCancel(connection::disconnect));
+    }
+
+    private int bound(int configuredMillis, RequestDeadline deadline) {
+        long configured = configuredMillis <= 0 ? Integer.MAX_VALUE : configuredMillis;
+        long bounded = deadline.boundMillis(configured);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bounded));
+    }
+
+    private record CancellableRequest(ClientHttpRequest delegate, RequestDeadline.Registration registration)
+            implements ClientHttpRequest, StreamingHttpOutputMessage {
+
+        @Override
+        public void setBody(Body body) {
+            if (delegate instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+                return;
+            }
+            try {
+                body.writeTo(delegate.getBody());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            try {
+                return new CancellableResponse(delegate.execute(), registration);
+            } catch (IOException | RuntimeException ex) {
+                registration.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return delegate.getAttributes();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+
+    private record CancellableResponse(ClientHttpResponse delegate, RequestDeadline.Registration registration)
+            implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            registration.close();
+            delegate.close();
+        }
+    }
+}
@@ -11,7 +11,7 @@ public class HttpClientConfig {
 
     @Bean
     RestClient ttsRestClient(SpeechKitProperties properties) {
-        ClientHttpRequestFactory requestFactory = requestFactory(properties);
+        ClientHttpRequestFactory requestFactory = deadlineAwareRequestFactory(properties);
 
         return RestClient.builder()
                 .requestFactory(requestFactory)
@@ -21,7 +21,7 @@ public class HttpClientConfig {
 
     @Bean
     RestClient sttRestClient(SpeechKitProperties properties) {
-        ClientHttpRequestFactory requestFactory = requestFactory(properties);
+        ClientHttpRequestFactory requestFactory = deadlineAwareRequestFactory(properties);
 
         return RestClient.builder()
                 .requestFactory(requestFactory)
@@ -31,14 +31,32 @@ public class HttpClientConfig {
 
     @Bean
     RestClient iamRestClient(SpeechKitProperties properties) {
-        ClientHttpRequestFactory requestFactory = requestFactory(properties);
+        ClientHttpRequestFactory requestFactory = deadlineAwareRequestFactory(properties);
+        return RestClient.builder()
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    @Bean
+    RestClient callbackRestClient(SpeechKitProperties properties) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        int timeoutMillis = (int) properties.getAsrJobs().getCallbackTimeout().toMillis();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
         return RestClient.builder()
                 .requestFactory(requestFactory)
                 .build();
     }
 
     private ClientHttpRequestFactory requestFactory(SpeechKitProperties properties) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        return configureTimeouts(new SimpleClientHttpRequestFactory(), properties);
+    }
+
+    private ClientHttpRequestFactory deadlineAwareRequestFactory(SpeechKitProperties properties) {
+        return configureTimeouts(new DeadlineAwareClientHttpRequestFactory(), properties);
+    }
+
+    private SimpleClientHttpRequestFactory configureTimeouts(SimpleClientHttpRequestFactory factory, SpeechKitProperties properties) {
         factory.setConnectTimeout((int) properties.getConnectTimeout().toMillis());
         factory.setReadTimeout((int) properties.getReadTimeout().toMillis());
         return factory;
@@ -1,5 +1,10 @@
 package com.example.ttsserver.config;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -7,7 +12,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Validated
@@ -20,7 +27,16 @@ public class SpeechKitProperties {
     @NotBlank
     private String sttBaseUrl = "https://stt.api.cloud.yandex.net";
 
-    @NotBlank
+    @NotNull
+    private List<String> baseUrls = new ArrayList<>();
+
+    @NotNull
+    private List<String> sttBaseUrls = new ArrayList<>();
+
+    @Valid
+    @NotNull
+    private EndpointSelectionProperties endpointSelection = new EndpointSelectionProperties();
+
     private String folderId;
 
     @NotNull
@@ -48,6 +64,13 @@ public class SpeechKitProperties {
     @Min(0)
     private int tokenMinTtlSeconds = 120;
 
+    @Min(0)
+    private int tokenRefreshAheadSeconds = 300;
+
+    @Valid
+    @NotNull
+    private TokenStoreProperties tokenStore = new TokenStoreProperties();
+
     @Min(0)
     private int tokenRefreshRetryBaseMillis = 200;
 
@@ -76,9 +99,47 @@ public class SpeechKitProperties {
 
     private boolean requireKnownAsrFormat;
 
+    @NotNull
+    private Duration asrMaxDuration = Duration.ZERO;
+
     @NotNull
     private AsrNormalizeProperties asrNormalize = new AsrNormalizeProperties();
 
+    @Valid
+    @NotNull
+    private LongAudioProperties asrLongAudio = new LongAudioProperties();
+
+    @Valid
+    @NotNull
+    private VadProperties asrVad = new VadProperties();
+
+    @Valid
+    @NotNull
+    private AsrJobsProperties asrJobs = new AsrJobsProperties();
+
+    @Valid
+    @NotNull
+    private AsrCacheProperties asrCache = new AsrCacheProperties();
+
+    @Valid
+    @NotNull
+    private AsrStreamingProperties asrStreaming = new AsrStreamingProperties();
+
+    @Valid
+    @NotNull
+    private List<AccountProperties> accounts = new ArrayList<>();
+
+    @NotNull
+    private Duration accountCooldown = Duration.ofSeconds(30);
+
+    @Valid
+    @NotNull
+    private RateLimitProperties rateLimit = new RateLimitProperties();
+
+    @Valid
+    @NotNull
+    private WarmupProperties warmup = new WarmupProperties();
+
     @NotNull
     private Duration connectTimeout = Duration.ofSeconds(5);
 
@@ -108,6 +169,30 @@ public class SpeechKitProperties {
         this.sttBaseUrl = sttBaseUrl;
     }
 
+    public List<String> getBaseUrls() {
+        return baseUrls;
+    }
+
+    public void setBaseUrls(List<String> baseUrls) {
+        this.baseUrls = baseUrls;
+    }
+
+    public List<String> getSttBaseUrls() {
+        return sttBaseUrls;
+    }
+
+    public void setSttBaseUrls(List<String> sttBaseUrls) {
+        this.sttBaseUrls = sttBaseUrls;
+    }
+
+    public EndpointSelectionProperties getEndpointSelection() {
+        return endpointSelection;
+    }
+
+    public void setEndpointSelection(EndpointSelectionProperties endpointSelection) {
+        this.endpointSelection = endpointSelection;
+    }
+
     public String getFolderId() {
         return folderId;
     }
@@ -196,6 +281,22 @@ public class SpeechKitProperties {
         this.tokenMinTtlSeconds = tokenMinTtlSeconds;
     }
 
+    public int getTokenRefreshAheadSeconds() {
+        return tokenRefreshAheadSeconds;
+    }
+
+    public void setTokenRefreshAheadSeconds(int tokenRefreshAheadSeconds) {
+        this.tokenRefreshAheadSeconds = tokenRefreshAheadSeconds;
+    }
+
+    public TokenStoreProperties getTokenStore() {
+        return tokenStore;
+    }
+
+    public void setTokenStore(TokenStoreProperties tokenStore) {
+        this.tokenStore = tokenStore;
+    }
+
     public int getTokenRefreshRetryBaseMillis() {
         return tokenRefreshRetryBaseMillis;
     }
@@ -276,6 +377,14 @@ public class SpeechKitProperties {
         this.requireKnownAsrFormat = requireKnownAsrFormat;
     }
 
+    public Duration getAsrMaxDuration() {
+        return asrMaxDuration;
+    }
+
+    public void setAsrMaxDuration(Duration asrMaxDuration) {
+        this.asrMaxDuration = asrMaxDuration;
+    }
+
     public AsrNormalizeProperties getAsrNormalize() {
         return asrNormalize;
     }
@@ -284,6 +393,95 @@ public class SpeechKitProperties {
         this.asrNormalize = asrNormalize;
     }
 
+    public LongAudioProperties getAsrLongAudio() {
+        return asrLongAudio;
+    }
+
+    public void setAsrLongAudio(LongAudioProperties asrLongAudio) {
+        this.asrLongAudio = asrLongAudio;
+    }
+
+    public VadProperties getAsrVad() {
+        return asrVad;
+    }
+
+    public void setAsrVad(VadProperties asrVad) {
+        this.asrVad = asrVad;
+    }
+
+    public AsrJobsProperties getAsrJobs() {
+        return asrJobs;
+    }
+
+    public void setAsrJobs(AsrJobsProperties asrJobs) {
+        this.asrJobs = asrJobs;
+    }
+
+    public AsrCacheProperties getAsrCache() {
+        return asrCache;
+    }
+
+    public void setAsrCache(AsrCacheProperties asrCache) {
+        this.asrCache = asrCache;
+    }
+
+    public AsrStreamingProperties getAsrStreaming() {
+        return asrStreaming;
+    }
+
+    public void setAsrStreaming(AsrStreamingProperties asrStreaming) {
+        this.asrStreaming = asrStreaming;
+    }
+
+    public List<AccountProperties> getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(List<AccountProperties> accounts) {
+        this.accounts = accounts;
+    }
+
+    public Duration getAccountCooldown() {
+        return accountCooldown;
+    }
+
+    public void setAccountCooldown(Duration accountCooldown) {
+        this.accountCooldown = accountCooldown;
+    }
+
+    @AssertTrue(message = "folder-id or at least one entry in accounts must be configured")
+    public boolean isFolderConfigured() {
+        return (folderId != null && !folderId.isBlank()) || (accounts != null && !accounts.isEmpty());
+    }
+
+    public AccountProperties primaryAccount() {
+        AccountProperties account = new AccountProperties();
+        account.setId("default");
+        account.setFolderId(folderId);
+        account.setApiKey(apiKey);
+        account.setIamToken(iamToken);
+        account.setSaKeyFile(saKeyFile);
+        account.setSaKeyJson(saKeyJson);
+        account.setIamMetadataEnabled(iamMetadataEnabled);
+        return account;
+    }
+
+    public RateLimitProperties getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimitProperties rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public WarmupProperties getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(WarmupProperties warmup) {
+        this.warmup = warmup;
+    }
+
     public Duration getConnectTimeout() {
         return connectTimeout;
     }
@@ -312,6 +510,13 @@ public class SpeechKitProperties {
 
         private boolean enabled;
 
+        @NotNull
+        private NormalizeMode mode = NormalizeMode.FILE;
+
+        private boolean inProcessWav = true;
+
+        private boolean nativePassthrough = true;
+
         @NotBlank
         private String ffmpegPath = "ffmpeg";
 
@@ -332,12 +537,25 @@ public class SpeechKitProperties {
         @Min(1)
         private int targetChannels = 1;
 
+        @NotNull
+        private NormalizeTarget targetFormat = NormalizeTarget.LPCM;
+
+        @Min(6000)
+        @Max(510000)
+        private int opusBitrate = 24000;
+
         @Min(1)
         private int maxStderrBytes = 8192;
 
         @Min(1)
         private Integer concurrencyMaxProcesses;
 
+        @Min(0)
+        private int maxQueued = 64;
+
+        @NotNull
+        private Duration maxQueueWait = Duration.ofSeconds(10);
+
         public boolean isEnabled() {
             return enabled;
         }
@@ -346,6 +564,30 @@ public class SpeechKitProperties {
             this.enabled = enabled;
         }
 
+        public NormalizeMode getMode() {
+            return mode;
+        }
+
+        public void setMode(NormalizeMode mode) {
+            this.mode = mode;
+        }
+
+        public boolean isInProcessWav() {
+            return inProcessWav;
+        }
+
+        public void setInProcessWav(boolean inProcessWav) {
+            this.inProcessWav = inProcessWav;
+        }
+
+        public boolean isNativePassthrough() {
+            return nativePassthrough;
+        }
+
+        public void setNativePassthrough(boolean nativePassthrough) {
+            this.nativePassthrough = nativePassthrough;
+        }
+
         public String getFfmpegPath() {
             return ffmpegPath;
         }
@@ -402,6 +644,22 @@ public class SpeechKitProperties {
             this.targetChannels = targetChannels;
         }
 
+        public NormalizeTarget getTargetFormat() {
+            return targetFormat;
+        }
+
+        public void setTargetFormat(NormalizeTarget targetFormat) {
+            this.targetFormat = targetFormat;
+        }
+
+        public int getOpusBitrate() {
+            return opusBitrate;
+        }
+
+        public void setOpusBitrate(int opusBitrate) {
+            this.opusBitrate = opusBitrate;
+        }
+
         public int getMaxStderrBytes() {
             return maxStderrBytes;
         }
@@ -417,6 +675,660 @@ public class SpeechKitProperties {
         public void setConcurrencyMaxProcesses(Integer concurrencyMaxProcesses) {
             this.concurrencyMaxProcesses = concurrencyMaxProcesses;
         }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public Duration getMaxQueueWait() {
+            return maxQueueWait;
+        }
+
+        public void setMaxQueueWait(Duration maxQueueWait) {
+            this.maxQueueWait = maxQueueWait;
+        }
+    }
+
+    public static class LongAudioProperties {
+
+        private boolean enabled = true;
+
+        @NotNull
+        private Duration window = Duration.ofSeconds(25);
+
+        @NotNull
+        private Duration overlap = Duration.ofSeconds(1);
+
+        @Min(1)
+        private int parallelism = 4;
+
+        @Min(0)
+        private int maxOverlapWords = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Duration getOverlap() {
+            return overlap;
+        }
+
+        public void setOverlap(Duration overlap) {
+            this.overlap = overlap;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getMaxOverlapWords() {
+            return maxOverlapWords;
+        }
+
+        public void setMaxOverlapWords(int maxOverlapWords) {
+            this.maxOverlapWords = maxOverlapWords;
+        }
+    }
+
+    public static class VadProperties {
+
+        private boolean enabled;
+
+        @NotNull
+        private Duration frame = Duration.ofMillis(20);
+
+        private double energyThresholdDb = -40;
+
+        @DecimalMin("0.0")
+        @DecimalMax("1.0")
+        private double zeroCrossingRate = 0.25;
+
+        @NotNull
+        private Duration hangover = Duration.ofMillis(200);
+
+        @NotNull
+        private Duration keepPause = Duration.ofMillis(400);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getFrame() {
+            return frame;
+        }
+
+        public void setFrame(Duration frame) {
+            this.frame = frame;
+        }
+
+        public double getEnergyThresholdDb() {
+            return energyThresholdDb;
+        }
+
+        public void setEnergyThresholdDb(double energyThresholdDb) {
+            this.energyThresholdDb = energyThresholdDb;
+        }
+
+        public double getZeroCrossingRate() {
+            return zeroCrossingRate;
+        }
+
+        public void setZeroCrossingRate(double zeroCrossingRate) {
+            this.zeroCrossingRate = zeroCrossingRate;
+        }
+
+        public Duration getHangover() {
+            return hangover;
+        }
+
+        public void setHangover(Duration hangover) {
+            this.hangover = hangover;
+        }
+
+        public Duration getKeepPause() {
+            return keepPause;
+        }
+
+        public void setKeepPause(Duration keepPause) {
+            this.keepPause = keepPause;
+        }
+    }
+
+    public static class AsrJobsProperties {
+
+        @Min(1)
+        private int workers = 2;
+
+        @Min(0)
+        private int maxQueued = 100;
+
+        private String spoolDir;
+
+        @NotNull
+        private Duration timeout = Duration.ofMinutes(10);
+
+        @NotNull
+        private Duration retention = Duration.ofHours(1);
+
+        @NotNull
+        private Duration callbackTimeout = Duration.ofSeconds(10);
+
+        @Min(1)
+        private int callbackMaxAttempts = 3;
+
+        @NotNull
+        private List<String> callbackAllowedHosts = new ArrayList<>();
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public String getSpoolDir() {
+            return spoolDir;
+        }
+
+        public void setSpoolDir(String spoolDir) {
+            this.spoolDir = spoolDir;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public Duration getCallbackTimeout() {
+            return callbackTimeout;
+        }
+
+        public void setCallbackTimeout(Duration callbackTimeout) {
+            this.callbackTimeout = callbackTimeout;
+        }
+
+        public int getCallbackMaxAttempts() {
+            return callbackMaxAttempts;
+        }
+
+        public void setCallbackMaxAttempts(int callbackMaxAttempts) {
+            this.callbackMaxAttempts = callbackMaxAttempts;
+        }
+
+        public List<String> getCallbackAllowedHosts() {
+            return callbackAllowedHosts;
+        }
+
+        public void setCallbackAllowedHosts(List<String> callbackAllowedHosts) {
+            this.callbackAllowedHosts = callbackAllowedHosts;
+        }
+    }
+
+    public static class AsrCacheProperties {
+
+        private boolean enabled = true;
+
+        @Min(0)
+        private int maxEntries = 10000;
+
+        @NotNull
+        private Duration ttl = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public static class AsrStreamingProperties {
+
+        @NotNull
+        private Duration endOfUtterance = Duration.ofMillis(600);
+
+        @NotNull
+        private Duration partialInterval = Duration.ofSeconds(1);
+
+        @NotNull
+        private Duration maxUtterance = Duration.ofSeconds(25);
+
+        @NotNull
+        private Duration preRoll = Duration.ofMillis(300);
+
+        @NotNull
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        @Min(1024)
+        private int maxMessageBytes = 64 * 1024;
+
+        public Duration getEndOfUtterance() {
+            return endOfUtterance;
+        }
+
+        public void setEndOfUtterance(Duration endOfUtterance) {
+            this.endOfUtterance = endOfUtterance;
+        }
+
+        public Duration getPartialInterval() {
+            return partialInterval;
+        }
+
+        public void setPartialInterval(Duration partialInterval) {
+            this.partialInterval = partialInterval;
+        }
+
+        public Duration getMaxUtterance() {
+            return maxUtterance;
+        }
+
+        public void setMaxUtterance(Duration maxUtterance) {
+            this.maxUtterance = maxUtterance;
+        }
+
+        public Duration getPreRoll() {
+            return preRoll;
+        }
+
+        public void setPreRoll(Duration preRoll) {
+            this.preRoll = preRoll;
+        }
+
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public int getMaxMessageBytes() {
+            return maxMessageBytes;
+        }
+
+        public void setMaxMessageBytes(int maxMessageBytes) {
+            this.maxMessageBytes = maxMessageBytes;
+        }
+    }
+
+    public enum NormalizeMode {
+        FILE,
+        PIPE
+    }
+
+    public enum NormalizeTarget {
+        LPCM,
+        OGGOPUS
+    }
+
+    public static class AccountProperties {
+
+        private String id;
+
+        @NotBlank
+        private String folderId;
+
+        private String apiKey;
+
+        private String iamToken;
+
+        private String saKeyFile;
+
+        private String saKeyJson;
+
+        private boolean iamMetadataEnabled;
+
+        @Min(1)
+        private int weight = 1;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getFolderId() {
+            return folderId;
+        }
+
+        public void setFolderId(String folderId) {
+            this.folderId = folderId;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public String getIamToken() {
+            return iamToken;
+        }
+
+        public void setIamToken(String iamToken) {
+            this.iamToken = iamToken;
+        }
+
+        public String getSaKeyFile() {
+            return saKeyFile;
+        }
+
+        public void setSaKeyFile(String saKeyFile) {
+            this.saKeyFile = saKeyFile;
+        }
+
+        public String getSaKeyJson() {
+            return saKeyJson;
+        }
+
+        public void setSaKeyJson(String saKeyJson) {
+            this.saKeyJson = saKeyJson;
+        }
+
+        public boolean isIamMetadataEnabled() {
+            return iamMetadataEnabled;
+        }
+
+        public void setIamMetadataEnabled(boolean iamMetadataEnabled) {
+            this.iamMetadataEnabled = iamMetadataEnabled;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    public static class RateLimitProperties {
+
+        @DecimalMin("0.0")
+        private double ttsRequestsPerSecond;
+
+        @DecimalMin("0.0")
+        private double ttsCharactersPerSecond;
+
+        @DecimalMin("0.0")
+        private double sttRequestsPerSecond;
+
+        @DecimalMin("0.0")
+        private double sttBytesPerSecond;
+
+        @DecimalMin("0.0")
+        private double burstSeconds = 1.0;
+
+        @DecimalMin("0.0")
+        private double maxRequestSeconds;
+
+        @NotNull
+        private Duration maxWait = Duration.ofMillis(500);
+
+        @Min(0)
+        private int maxQueued = 64;
+
+        public double getTtsRequestsPerSecond() {
+            return ttsRequestsPerSecond;
+        }
+
+        public void setTtsRequestsPerSecond(double ttsRequestsPerSecond) {
+            this.ttsRequestsPerSecond = ttsRequestsPerSecond;
+        }
+
+        public double getTtsCharactersPerSecond() {
+            return ttsCharactersPerSecond;
+        }
+
+        public void setTtsCharactersPerSecond(double ttsCharactersPerSecond) {
+            this.ttsCharactersPerSecond = ttsCharactersPerSecond;
+        }
+
+        public double getSttRequestsPerSecond() {
+            return sttRequestsPerSecond;
+        }
+
+        public void setSttRequestsPerSecond(double sttRequestsPerSecond) {
+            this.sttRequestsPerSecond = sttRequestsPerSecond;
+        }
+
+        public double getSttBytesPerSecond() {
+            return sttBytesPerSecond;
+        }
+
+        public void setSttBytesPerSecond(double sttBytesPerSecond) {
+            this.sttBytesPerSecond = sttBytesPerSecond;
+        }
+
+        public double getBurstSeconds() {
+            return burstSeconds;
+        }
+
+        public void setBurstSeconds(double burstSeconds) {
+            this.burstSeconds = burstSeconds;
+        }
+
+        public double getMaxRequestSeconds() {
+            return maxRequestSeconds;
+        }
+
+        public void setMaxRequestSeconds(double maxRequestSeconds) {
+            this.maxRequestSeconds = maxRequestSeconds;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+    }
+
+    public static class EndpointSelectionProperties {
+
+        @NotNull
+        private Duration decayTime = Duration.ofSeconds(10);
+
+        @NotNull
+        private Duration failurePenalty = Duration.ofSeconds(5);
+
+        @Min(1)
+        private int ejectAfterFailures = 3;
+
+        @NotNull
+        private Duration ejectionDuration = Duration.ofSeconds(30);
+
+        public Duration getDecayTime() {
+            return decayTime;
+        }
+
+        public void setDecayTime(Duration decayTime) {
+            this.decayTime = decayTime;
+        }
+
+        public Duration getFailurePenalty() {
+            return failurePenalty;
+        }
+
+        public void setFailurePenalty(Duration failurePenalty) {
+            this.failurePenalty = failurePenalty;
+        }
+
+        public int getEjectAfterFailures() {
+            return ejectAfterFailures;
+        }
+
+        public void setEjectAfterFailures(int ejectAfterFailures) {
+            this.ejectAfterFailures = ejectAfterFailures;
+        }
+
+        public Duration getEjectionDuration() {
+            return ejectionDuration;
+        }
+
+        public void setEjectionDuration(Duration ejectionDuration) {
+            this.ejectionDuration = ejectionDuration;
+        }
+    }
+
+    public static class TokenStoreProperties {
+
+        @NotNull
+        private TokenStoreType type = TokenStoreType.NONE;
+
+        @NotBlank
+        private String directory = "/var/tmp/tts-server/iam";
+
+        private String encryptionKey;
+
+        public TokenStoreType getType() {
+            return type;
+        }
+
+        public void setType(TokenStoreType type) {
+            this.type = type;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public String getEncryptionKey() {
+            return encryptionKey;
+        }
+
+        public void setEncryptionKey(String encryptionKey) {
+            this.encryptionKey = encryptionKey;
+        }
+    }
+
+    public enum TokenStoreType {
+        NONE,
+        FILE
+    }
+
+    public static class WarmupProperties {
+
+        private boolean enabled = true;
+
+        @NotNull
+        private Duration timeout = Duration.ofSeconds(30);
+
+        @Min(0)
+        private int connectionsPerEndpoint = 2;
+
+        @Min(0)
+        private int codecIterations = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getConnectionsPerEndpoint() {
+            return connectionsPerEndpoint;
+        }
+
+        public void setConnectionsPerEndpoint(int connectionsPerEndpoint) {
+            this.connectionsPerEndpoint = connectionsPerEndpoint;
+        }
+
+        public int getCodecIterations() {
+            return codecIterations;
+        }
+
+        public void setCodecIterations(int codecIterations) {
+            this.codecIterations = codecIterations;
+        }
     }
 
     public static class TtsProperties {
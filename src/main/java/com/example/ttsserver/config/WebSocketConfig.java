@@ -0,0 +1,35 @@
+package com.example.ttsserver.config;
+
+import com.example.ttsserver.api.asr.TranscriptionStreamHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final TranscriptionStreamHandler transcriptionStreamHandler;
+
+    public WebSocketConfig(TranscriptionStreamHandler transcriptionStreamHandler) {
+        this.transcriptionStreamHandler = transcriptionStreamHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(transcriptionStreamHandler, "/v1/audio/transcriptions/stream");
+    }
+
+    @Bean
+    ServletServerContainerFactoryBean webSocketContainer(SpeechKitProperties properties) {
+        SpeechKitProperties.AsrStreamingProperties streaming = properties.getAsrStreaming();
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(streaming.getMaxMessageBytes());
+        container.setMaxTextMessageBufferSize(streaming.getMaxMessageBytes());
+        container.setMaxSessionIdleTimeout(streaming.getIdleTimeout().toMillis());
+        return container;
+    }
+}
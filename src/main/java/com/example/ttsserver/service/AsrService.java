@@ -2,6 +2,11 @@ package com.example.ttsserver.service;
 
 import com.example.ttsserver.config.SpeechKitProperties;
 import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -9,125 +14,682 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 @Service
 public class AsrService {
 
+    private static final int FORMAT_DETECTION_PREFIX_BYTES = AudioFormatSniffer.PREFIX_BYTES;
+    private static final int WAV_HEADER_BYTES = 44;
+    private static final long SYNC_MAX_DURATION_MILLIS = 30_000;
+    private static final List<Integer> OPUS_SAMPLE_RATES = List.of(8000, 12000, 16000, 24000, 48000);
+    private static final int KEEP_CHANNELS = 0;
+    private static final int MAX_SPLIT_CHANNELS = 8;
+    private static final long TRUNCATION_MARGIN_MILLIS = 2000;
+
     private final SpeechKitClient speechKitClient;
     private final SpeechKitProperties properties;
-    private final Semaphore normalizationSemaphore;
+    private final NormalizationQueue normalizationQueue;
+    private final ChunkedRecognizer chunkedRecognizer;
+    private final VoiceActivityDetector voiceActivityDetector;
+    private final TranscriptionCache transcriptionCache;
+    private final Counter nativeRoutes;
+    private final Counter inProcessRoutes;
+    private final Counter ffmpegRoutes;
+    private final Counter durationRejections;
+    private final Counter durationTruncations;
 
     public AsrService(SpeechKitClient speechKitClient, SpeechKitProperties properties) {
+        this(speechKitClient, properties, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public AsrService(SpeechKitClient speechKitClient, SpeechKitProperties properties, MeterRegistry meterRegistry) {
         this.speechKitClient = speechKitClient;
         this.properties = properties;
-        this.normalizationSemaphore = createNormalizationSemaphore(properties.getAsrNormalize().getConcurrencyMaxProcesses());
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        this.normalizationQueue = new NormalizationQueue(
+                normalize.getConcurrencyMaxProcesses(),
+                normalize.getMaxQueued(),
+                normalize.getMaxQueueWait(),
+                meterRegistry
+        );
+        this.chunkedRecognizer = new ChunkedRecognizer(this::recognizePcm, properties.getAsrLongAudio());
+        this.voiceActivityDetector = new VoiceActivityDetector(properties.getAsrVad(), meterRegistry);
+        this.transcriptionCache = new TranscriptionCache(
+                properties.getAsrCache().getMaxEntries(),
+                properties.getAsrCache().getTtl(),
+                meterRegistry
+        );
+        this.nativeRoutes = routes(meterRegistry, "native");
+        this.inProcessRoutes = routes(meterRegistry, "in_process");
+        this.ffmpegRoutes = routes(meterRegistry, "ffmpeg");
+        this.durationRejections = durationLimits(meterRegistry, "rejected");
+        this.durationTruncations = durationLimits(meterRegistry, "truncated");
     }
 
     public String transcribe(MultipartFile file, String language) {
-        if (file.isEmpty()) {
+        try (AudioUpload.MultipartUpload upload = AudioUpload.of(file)) {
+            return transcribe(upload, file.getOriginalFilename(), file.getContentType(), language);
+        }
+    }
+
+    public String transcribe(AudioUpload upload, String filename, String contentType, String language) {
+        if (upload.size() == 0) {
             throw new ApiException(HttpStatus.BAD_REQUEST, "file must not be empty", "invalid_request_error", "file", "validation_error");
         }
         try {
             String lang = (language == null || language.isBlank()) ? properties.getDefaultLanguage() : language;
-            byte[] bytes = file.getBytes();
+            AudioFormatSniffer.Result sniffed = sniff(upload);
+            String key = properties.getAsrCache().isEnabled() ? cacheKey(upload, filename, contentType, lang) : null;
+            return transcribeCached(upload, sniffed, filename, contentType, lang, WavDecoder.ALL_CHANNELS, key);
+        } catch (IOException e) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Unable to read uploaded file", "invalid_request_error", "file", "invalid_file");
+        }
+    }
+
+    public List<String> transcribeChannels(MultipartFile file, String language) {
+        try (AudioUpload.MultipartUpload upload = AudioUpload.of(file)) {
+            return transcribeChannels(upload, file.getOriginalFilename(), language);
+        }
+    }
+
+    public List<String> transcribeChannels(AudioUpload upload, String filename, String language) {
+        if (upload.size() == 0) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "file must not be empty", "invalid_request_error", "file", "validation_error");
+        }
+        try {
+            String lang = (language == null || language.isBlank()) ? properties.getDefaultLanguage() : language;
+            AudioFormatSniffer.Result sniffed = sniff(upload);
+            String key = properties.getAsrCache().isEnabled() ? cacheKey(upload, filename, null, lang) : null;
+            WavDecoder.Header header = sniffed.wavHeader();
+            if (sniffed.channels() == 1 || header != null && header.isDecodable()) {
+                return transcribeChannels(upload, sniffed, filename, lang, key);
+            }
             SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
-            if (normalize.isEnabled()) {
-                byte[] normalizedBytes = normalizeWithFfmpeg(bytes);
-                return speechKitClient.recognize(
-                        normalizedBytes,
-                        file.getOriginalFilename(),
-                        lang,
-                        "lpcm",
-                        normalize.getTargetSampleRateHertz()
+            if (!normalize.isEnabled()) {
+                throw new ApiException(
+                        HttpStatus.BAD_REQUEST,
+                        "split_channels without ASR normalization supports PCM, IEEE float, A-law and mu-law WAV only",
+                        "invalid_request_error",
+                        "split_channels",
+                        "unsupported_media_type"
                 );
             }
-            DetectedAudioFormat detectedFormat = detectFormat(file.getOriginalFilename(), file.getContentType(), bytes);
+            if (sniffed.channels() > 1) {
+                return transcribeChannels(upload, sniffed, filename, lang, key);
+            }
+            ffmpegRoutes.increment();
+            AudioUpload truncated = truncateToMaxDuration(upload, sniffed, normalize);
+            Path decodedPath = normalizeWithFfmpeg(truncated, KEEP_CHANNELS, WavDecoder.ALL_CHANNELS, "wav");
+            try {
+                AudioUpload wav = AudioUpload.of(decodedPath);
+                AudioFormatSniffer.Result decoded = AudioFormatSniffer.sniff(wav, wav.readPrefix(FORMAT_DETECTION_PREFIX_BYTES));
+                if (decoded.wavHeader() == null || !decoded.wavHeader().isPcm16()) {
+                    throw conversionFailed("Audio conversion failed", "ffmpeg did not produce 16-bit PCM WAV");
+                }
+                return transcribeChannels(wav, decoded, filename, lang, key);
+            } finally {
+                deleteQuietly(decodedPath);
+            }
+        } catch (IOException e) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "Unable to read uploaded file", "invalid_request_error", "file", "invalid_file");
+        }
+    }
+
+    private List<String> transcribeChannels(AudioUpload upload,
+                                            AudioFormatSniffer.Result sniffed,
+                                            String filename,
+                                            String lang,
+                                            String key) throws IOException {
+        int channels = checkSplitChannels(sniffed.channels());
+        if (channels == 1) {
+            return List.of(transcribeCached(upload, sniffed, filename, null, lang, WavDecoder.ALL_CHANNELS, key));
+        }
+        List<Callable<String>> tasks = new ArrayList<>(channels);
+        for (int channel = 0; channel < channels; channel++) {
+            int selected = channel;
+            tasks.add(() -> transcribeCached(upload, sniffed, filename, null, lang, selected, key));
+        }
+        return recognizeChannels(tasks);
+    }
+
+    private String transcribeCached(AudioUpload upload,
+                                    AudioFormatSniffer.Result sniffed,
+                                    String filename,
+                                    String contentType,
+                                    String lang,
+                                    int channel,
+                                    String key) throws IOException {
+        if (key == null) {
+            return transcribeUncached(upload, sniffed, filename, contentType, lang, channel);
+        }
+        return transcriptionCache.get(
+                channel == WavDecoder.ALL_CHANNELS ? key : key + "|channel=" + channel,
+                () -> transcribeUncached(upload, sniffed, filename, contentType, lang, channel)
+        );
+    }
+
+    private AudioFormatSniffer.Result sniff(AudioUpload upload) throws IOException {
+        AudioFormatSniffer.Result sniffed = AudioFormatSniffer.sniff(upload, upload.readPrefix(FORMAT_DETECTION_PREFIX_BYTES));
+        Duration maxDuration = properties.getAsrMaxDuration();
+        if (maxDuration != null && maxDuration.isPositive() && sniffed.durationMillis() > maxDuration.toMillis()) {
+            durationRejections.increment();
+            throw new ApiException(
+                    HttpStatus.BAD_REQUEST,
+                    "Audio is too long: about " + sniffed.durationMillis() / 1000 + " s, the limit is " + maxDuration.toSeconds() + " s",
+                    "invalid_request_error",
+                    "file",
+                    "audio_too_long"
+            );
+        }
+        return sniffed;
+    }
+
+    private AudioUpload truncateToMaxDuration(AudioUpload upload,
+                                              AudioFormatSniffer.Result sniffed,
+                                              SpeechKitProperties.AsrNormalizeProperties normalize) {
+        long maxMillis = normalize.getMaxDurationSeconds() * 1000L;
+        if (maxMillis <= 0 || !sniffed.isStreamable() || sniffed.durationMillis() <= maxMillis) {
+            return upload;
+        }
+        WavDecoder.Header header = sniffed.wavHeader();
+        long bytes;
+        if (header != null && header.dataOffset() >= 0 && header.blockAlign() > 0) {
+            bytes = header.dataOffset() + (maxMillis * header.sampleRateHertz() + 999) / 1000 * header.blockAlign();
+        } else if (sniffed.durationMillis() > maxMillis + TRUNCATION_MARGIN_MILLIS) {
+            bytes = (long) Math.ceil((double) upload.size() * (maxMillis + TRUNCATION_MARGIN_MILLIS) / sniffed.durationMillis());
+        } else {
+            return upload;
+        }
+        durationTruncations.increment();
+        return upload.slice(0, bytes);
+    }
+
+    private String transcribeUncached(AudioUpload original,
+                                      AudioFormatSniffer.Result sniffed,
+                                      String filename,
+                                      String contentType,
+                                      String lang,
+                                      int channel) throws IOException {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        AudioUpload upload = original;
+        if (!normalize.isEnabled()) {
+            DetectedAudioFormat detectedFormat = detectFormat(filename, contentType, sniffed);
+            WavDecoder.Header convertFrom = detectedFormat.convertFromWav();
+            (convertFrom == null ? nativeRoutes : inProcessRoutes).increment();
             return speechKitClient.recognize(
-                    bytes,
-                    file.getOriginalFilename(),
+                    convertFrom == null ? upload : AudioUpload.of(normalizeWavInProcess(
+                            upload, convertFrom, 1, channel, detectedFormat.sampleRateHertz(), normalize)),
+                    filename,
                     lang,
                     detectedFormat.format(),
                     detectedFormat.sampleRateHertz()
             );
-        } catch (IOException e) {
-            throw new ApiException(HttpStatus.BAD_REQUEST, "Unable to read uploaded file", "invalid_request_error", "file", "invalid_file");
+        }
+        if (channel == WavDecoder.ALL_CHANNELS && canSkipNormalization(upload, sniffed, normalize)) {
+            nativeRoutes.increment();
+            return speechKitClient.recognize(upload, filename, lang, sniffed.nativeFormat(), sniffed.sampleRateHertz());
+        }
+        upload = truncateToMaxDuration(upload, sniffed, normalize);
+        int targetChannels = channel == WavDecoder.ALL_CHANNELS ? normalize.getTargetChannels() : 1;
+        WavDecoder.Header wavHeader = normalize.isInProcessWav() ? sniffed.wavHeader() : null;
+        if (wavHeader != null && canNormalizeInProcess(wavHeader, targetChannels)) {
+            inProcessRoutes.increment();
+            AudioUpload pcm = AudioUpload.of(normalizeWavInProcess(
+                    upload, wavHeader, targetChannels, channel, normalize.getTargetSampleRateHertz(), normalize));
+            return recognizeNormalized(pcm, 0, targetChannels, filename, lang);
+        }
+        ffmpegRoutes.increment();
+        if (canEncodeOpusInOnePass(sniffed, targetChannels, normalize)) {
+            return recognizeOggOpus(upload, targetChannels, channel, filename, lang);
+        }
+        if (normalize.getMode() == SpeechKitProperties.NormalizeMode.PIPE) {
+            AudioUpload pcm = AudioUpload.of(normalizeWithFfmpegPipe(upload, targetChannels, channel));
+            return recognizeNormalized(pcm, 0, targetChannels, filename, lang);
+        }
+        Path normalizedPath = normalizeWithFfmpeg(upload, targetChannels, channel, "wav");
+        try {
+            AudioUpload wav = AudioUpload.of(normalizedPath);
+            WavDecoder.Header header = WavDecoder.parseHeader(wav.readPrefix(FORMAT_DETECTION_PREFIX_BYTES));
+            long dataOffset = header == null || header.dataOffset() < 0 ? WAV_HEADER_BYTES : header.dataOffset();
+            return recognizeNormalized(wav, dataOffset, targetChannels, filename, lang);
+        } finally {
+            deleteQuietly(normalizedPath);
+        }
+    }
+
+    private boolean canEncodeOpusInOnePass(AudioFormatSniffer.Result sniffed,
+                                           int channels,
+                                           SpeechKitProperties.AsrNormalizeProperties normalize) {
+        if (normalize.getTargetFormat() != SpeechKitProperties.NormalizeTarget.OGGOPUS || voiceActivityDetector.isEnabled()) {
+            return false;
+        }
+        if (!properties.getAsrLongAudio().isEnabled()) {
+            return true;
+        }
+        if (!sniffed.hasDuration()) {
+            return false;
+        }
+        long durationMillis = sniffed.durationMillis();
+        if (normalize.getMaxDurationSeconds() > 0) {
+            durationMillis = Math.min(durationMillis, normalize.getMaxDurationSeconds() * 1000L);
+        }
+        int sampleRateHertz = normalize.getTargetSampleRateHertz();
+        long pcmBytes = (durationMillis + TRUNCATION_MARGIN_MILLIS) * sampleRateHertz / 1000 * 2 * channels;
+        return !chunkedRecognizer.shouldSplit(pcmBytes, sampleRateHertz, channels);
+    }
+
+    private String recognizeOggOpus(AudioUpload upload,
+                                    int targetChannels,
+                                    int channel,
+                                    String filename,
+                                    String lang) throws IOException {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        if (normalize.getMode() == SpeechKitProperties.NormalizeMode.PIPE) {
+            checkNormalizationInputSize(upload, normalize);
+            List<String> args = normalizeArgs(normalize, "pipe:0", targetChannels, channel, "ogg", "pipe:1");
+            return speechKitClient.recognize(AudioUpload.of(runFfmpegPipe(upload, args)), filename, lang, "oggopus", null);
+        }
+        Path opusPath = normalizeWithFfmpeg(upload, targetChannels, channel, "ogg");
+        try {
+            return speechKitClient.recognize(AudioUpload.of(opusPath), filename, lang, "oggopus", null);
+        } finally {
+            deleteQuietly(opusPath);
         }
     }
 
-    private byte[] normalizeWithFfmpeg(byte[] inputBytes) {
+    private boolean canSkipNormalization(AudioUpload upload,
+                                         AudioFormatSniffer.Result sniffed,
+                                         SpeechKitProperties.AsrNormalizeProperties normalize) {
+        if (!normalize.isNativePassthrough() || voiceActivityDetector.isEnabled() || !sniffed.isNative() || !sniffed.hasDuration()) {
+            return false;
+        }
+        long maxDurationMillis = SYNC_MAX_DURATION_MILLIS;
+        SpeechKitProperties.LongAudioProperties longAudio = properties.getAsrLongAudio();
+        if (longAudio.isEnabled()) {
+            maxDurationMillis = Math.min(maxDurationMillis, longAudio.getWindow().toMillis());
+        }
+        if (normalize.getMaxDurationSeconds() > 0) {
+            maxDurationMillis = Math.min(maxDurationMillis, normalize.getMaxDurationSeconds() * 1000L);
+        }
+        return upload.size() <= SpeechKitClient.SYNC_MAX_BYTES && sniffed.durationMillis() <= maxDurationMillis;
+    }
+
+    private String cacheKey(AudioUpload upload, String filename, String contentType, String language) throws IOException {
         SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
-        if (inputBytes.length > normalize.getMaxInputBytes()) {
+        SpeechKitProperties.VadProperties vad = properties.getAsrVad();
+        String normalization = normalize.isEnabled()
+                ? normalize.getMode() + ":" + normalize.isInProcessWav() + ":" + normalize.isNativePassthrough()
+                + ":" + normalize.getTargetSampleRateHertz()
+                + ":" + normalize.getTargetChannels() + ":" + normalize.getTargetFormat() + ":" + normalize.getOpusBitrate()
+                : "none";
+        String voiceActivity = vad.isEnabled()
+                ? vad.getFrame() + ":" + vad.getEnergyThresholdDb() + ":" + vad.getZeroCrossingRate()
+                + ":" + vad.getHangover() + ":" + vad.getKeepPause()
+                : "none";
+        return String.join("|",
+                TranscriptionCache.sha256(upload),
+                language,
+                fileExtension(filename),
+                normalizeContentType(contentType),
+                normalization,
+                voiceActivity
+        );
+    }
+
+    private String recognizeNormalized(AudioUpload audio,
+                                       long pcmOffset,
+                                       int channels,
+                                       String filename,
+                                       String language) throws IOException {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        int sampleRateHertz = normalize.getTargetSampleRateHertz();
+        AudioUpload upload = audio;
+        AudioUpload pcm = audio.slice(pcmOffset, audio.size() - pcmOffset);
+        List<Long> splitPoints = List.of();
+        if (voiceActivityDetector.isEnabled()) {
+            VoiceActivityDetector.Result speech = voiceActivityDetector.detect(pcm, sampleRateHertz, channels);
+            if (speech.isSilent()) {
+                return "";
+            }
+            pcm = speech.apply(pcm);
+            upload = pcm;
+            splitPoints = speech.splitPoints();
+        }
+        if (chunkedRecognizer.shouldSplit(pcm.size(), sampleRateHertz, channels)) {
+            return chunkedRecognizer.recognize(pcm, sampleRateHertz, channels, splitPoints, filename, language);
+        }
+        if (normalize.getTargetFormat() == SpeechKitProperties.NormalizeTarget.OGGOPUS) {
+            return recognizePcm(pcm, sampleRateHertz, channels, filename, language);
+        }
+        return speechKitClient.recognize(upload, filename, language, "lpcm", sampleRateHertz);
+    }
+
+    private int checkSplitChannels(int channels) {
+        if (channels > MAX_SPLIT_CHANNELS) {
             throw new ApiException(
-                    HttpStatus.PAYLOAD_TOO_LARGE,
-                    "Audio file too large for normalization",
+                    HttpStatus.BAD_REQUEST,
+                    "split_channels supports at most " + MAX_SPLIT_CHANNELS + " channels, got " + channels,
                     "invalid_request_error",
-                    "file",
-                    "file_too_large"
+                    "split_channels",
+                    "validation_error"
             );
         }
+        return channels;
+    }
+
+    private List<String> recognizeChannels(List<Callable<String>> channels) throws IOException {
+        RequestDeadline deadline = RequestDeadline.current();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("asr-channel-", 0).factory());
+        try {
+            List<Future<String>> results = new ArrayList<>(channels.size());
+            for (Callable<String> channel : channels) {
+                results.add(executor.submit(() -> {
+                    if (mdc != null) {
+                        MDC.setContextMap(mdc);
+                    }
+                    try (RequestDeadline.Scope ignored = deadline.attach()) {
+                        return channel.call();
+                    } finally {
+                        MDC.clear();
+                    }
+                }));
+            }
+            List<String> texts = new ArrayList<>(results.size());
+            for (Future<String> result : results) {
+                texts.add(awaitChannel(result));
+            }
+            return texts;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String awaitChannel(Future<String> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw RequestDeadline.exceeded();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private String recognizePcm(AudioUpload pcm, int sampleRateHertz, int channels, String filename, String language) {
+        if (properties.getAsrNormalize().getTargetFormat() == SpeechKitProperties.NormalizeTarget.OGGOPUS) {
+            AudioUpload opus = AudioUpload.of(encodeOggOpus(pcm, sampleRateHertz, channels));
+            return speechKitClient.recognize(opus, filename, language, "oggopus", null);
+        }
+        return speechKitClient.recognize(pcm, filename, language, "lpcm", sampleRateHertz);
+    }
 
-        boolean acquired = false;
+    private static Counter durationLimits(MeterRegistry meterRegistry, String action) {
+        return Counter.builder("asr.duration.limited")
+                .description("ASR uploads rejected or cut before conversion because their estimated duration was over the limit")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    private static Counter routes(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("asr.upload.route")
+                .description("ASR uploads sent as-is, converted in-process, or converted with ffmpeg")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    private boolean canNormalizeInProcess(WavDecoder.Header header, int targetChannels) {
+        return header.isDecodable() && (targetChannels == 1 || targetChannels == header.channels());
+    }
+
+    private byte[] normalizeWavInProcess(AudioUpload upload,
+                                         WavDecoder.Header header,
+                                         int targetChannels,
+                                         int channel,
+                                         int targetSampleRateHertz,
+                                         SpeechKitProperties.AsrNormalizeProperties normalize) throws IOException {
+        checkNormalizationInputSize(upload, normalize);
+        RequestDeadline deadline = RequestDeadline.current();
+        long maxOutputFrames = (long) normalize.getMaxDurationSeconds() * targetSampleRateHertz;
+        try (NormalizationQueue.Permit ignored = normalizationQueue.acquire(deadline);
+             InputStream input = upload.openStream()) {
+            deadline.checkNotExpired();
+            if (channel != WavDecoder.ALL_CHANNELS) {
+                return WavDecoder.channelToPcm16(input, header, channel, targetSampleRateHertz, maxOutputFrames);
+            }
+            return WavDecoder.toPcm16(
+                    input,
+                    header,
+                    targetChannels,
+                    targetSampleRateHertz,
+                    maxOutputFrames
+            );
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw conversionFailed("Audio conversion interrupted", null);
+        }
+    }
+
+    private Path normalizeWithFfmpeg(AudioUpload upload, int targetChannels, int channel, String outputFormat) {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        checkNormalizationInputSize(upload, normalize);
+
+        RequestDeadline deadline = RequestDeadline.current();
+        NormalizationQueue.Permit permit = null;
+        boolean converted = false;
         Path inputPath = null;
         Path outputPath = null;
         try {
-            acquired = acquireNormalizationPermit();
+            permit = normalizationQueue.acquire(deadline);
             Path tempDir = resolveTempDir(normalize.getTempDir());
-            inputPath = Files.createTempFile(tempDir, "asr-input-", ".bin");
-            outputPath = Files.createTempFile(tempDir, "asr-output-", ".wav");
-
-            Files.write(inputPath, inputBytes);
+            Path inputFile = upload.asFile(tempDir);
+            if (inputFile == null) {
+                inputPath = Files.createTempFile(tempDir, "asr-input-", ".bin");
+                try (InputStream input = upload.openStream()) {
+                    Files.copy(input, inputPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                inputFile = inputPath;
+            }
+            outputPath = Files.createTempFile(tempDir, "asr-output-", "." + outputFormat);
 
-            Process process = startFfmpegProcess(normalize, inputPath, outputPath);
+            deadline.checkNotExpired();
+            Process process = new ProcessBuilder(
+                    normalizeArgs(normalize, inputFile.toString(), targetChannels, channel, outputFormat, outputPath.toString())
+            ).start();
             StderrCapture stderrCapture = new StderrCapture(process.getErrorStream(), normalize.getMaxStderrBytes());
-            Thread stderrThread = Thread.ofPlatform().daemon().start(stderrCapture::readToEnd);
-
-            boolean finished = process.waitFor(normalize.getTimeoutMs(), TimeUnit.MILLISECONDS);
-            if (!finished) {
-                process.destroyForcibly();
-                process.waitFor(2, TimeUnit.SECONDS);
-                joinQuietly(stderrThread);
-                throw conversionFailed("Audio conversion timed out", stderrCapture.asString());
+            Thread stderrThread = Thread.ofVirtual().start(stderrCapture::readToEnd);
+
+            awaitFfmpeg(process, stderrCapture, List.of(stderrThread), deadline, normalize);
+            converted = true;
+            return outputPath;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw conversionFailed("Audio conversion interrupted", null);
+        } catch (IOException ex) {
+            throw mapFfmpegIoException(ex);
+        } finally {
+            deleteQuietly(inputPath);
+            if (!converted) {
+                deleteQuietly(outputPath);
+            }
+            if (permit != null) {
+                permit.close();
             }
+        }
+    }
+
+    private byte[] normalizeWithFfmpegPipe(AudioUpload upload, int targetChannels, int channel) {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        checkNormalizationInputSize(upload, normalize);
+        return runFfmpegPipe(upload, normalizeArgs(normalize, "pipe:0", targetChannels, channel, "s16le", "pipe:1"));
+    }
 
-            joinQuietly(stderrThread);
-            if (process.exitValue() != 0) {
-                throw conversionFailed("Audio conversion failed", stderrCapture.asString());
+    private byte[] encodeOggOpus(AudioUpload pcm, int sampleRateHertz, int channels) {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        List<String> args = new ArrayList<>();
+        args.add(normalize.getFfmpegPath());
+        args.add("-hide_banner");
+        args.add("-loglevel");
+        args.add("error");
+        args.add("-f");
+        args.add("s16le");
+        args.add("-ar");
+        args.add(String.valueOf(sampleRateHertz));
+        args.add("-ac");
+        args.add(String.valueOf(channels));
+        args.add("-i");
+        args.add("pipe:0");
+        args.add("-c:a");
+        args.add("libopus");
+        args.add("-b:a");
+        args.add(String.valueOf(normalize.getOpusBitrate()));
+        args.add("-application");
+        args.add("voip");
+        if (!OPUS_SAMPLE_RATES.contains(sampleRateHertz)) {
+            args.add("-ar");
+            args.add("48000");
+        }
+        args.add("-f");
+        args.add("ogg");
+        args.add("pipe:1");
+        try {
+            return runFfmpegPipe(pcm, args);
+        } catch (ApiException ex) {
+            if (!"unsupported_media_type".equals(ex.getCode())) {
+                throw ex;
             }
+            throw new ApiException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    ex.getMessage().replaceFirst("^Audio conversion", "Opus encoding"),
+                    "server_error",
+                    null,
+                    "encoding_failed"
+            );
+        }
+    }
+
+    private byte[] runFfmpegPipe(AudioUpload upload, List<String> args) {
+        SpeechKitProperties.AsrNormalizeProperties normalize = properties.getAsrNormalize();
+        RequestDeadline deadline = RequestDeadline.current();
+        NormalizationQueue.Permit permit = null;
+        try {
+            permit = normalizationQueue.acquire(deadline);
+            deadline.checkNotExpired();
+            Process process = new ProcessBuilder(args).start();
+            StderrCapture stderrCapture = new StderrCapture(process.getErrorStream(), normalize.getMaxStderrBytes());
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Thread stdinPump = Thread.ofVirtual().start(() -> feedStdin(upload, process.getOutputStream()));
+            Thread stdoutPump = Thread.ofVirtual().start(() -> copyQuietly(process.getInputStream(), output));
+            Thread stderrThread = Thread.ofVirtual().start(stderrCapture::readToEnd);
 
-            return Files.readAllBytes(outputPath);
+            awaitFfmpeg(process, stderrCapture, List.of(stdinPump, stdoutPump, stderrThread), deadline, normalize);
+            return output.toByteArray();
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
             throw conversionFailed("Audio conversion interrupted", null);
         } catch (IOException ex) {
-            if (isMissingExecutable(ex)) {
-                throw new ApiException(
-                        HttpStatus.BAD_GATEWAY,
-                        "ASR normalization backend is unavailable",
-                        "server_error",
-                        "file",
-                        "upstream_unavailable"
-                );
-            }
-            throw conversionFailed("Audio conversion failed", ex.getMessage());
+            throw mapFfmpegIoException(ex);
         } finally {
-            deleteQuietly(inputPath);
-            deleteQuietly(outputPath);
-            if (acquired && normalizationSemaphore != null) {
-                normalizationSemaphore.release();
+            if (permit != null) {
+                permit.close();
+            }
+        }
+    }
+
+    private void checkNormalizationInputSize(AudioUpload upload, SpeechKitProperties.AsrNormalizeProperties normalize) {
+        if (upload.size() > normalize.getMaxInputBytes()) {
+            throw new ApiException(
+                    HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Audio file too large for normalization",
+                    "invalid_request_error",
+                    "file",
+                    "file_too_large"
+            );
+        }
+    }
+
+    private void awaitFfmpeg(Process process,
+                             StderrCapture stderrCapture,
+                             List<Thread> pumps,
+                             RequestDeadline deadline,
+                             SpeechKitProperties.AsrNormalizeProperties normalize) throws InterruptedException {
+        boolean finished;
+        try (RequestDeadline.Registration ignored = deadline.onCancel(process::destroyForcibly)) {
+            finished = process.waitFor(deadline.boundMillis(normalize.getTimeoutMs()), TimeUnit.MILLISECONDS);
+        }
+        if (!finished || deadline.isCancelled()) {
+            process.destroyForcibly();
+            process.waitFor(2, TimeUnit.SECONDS);
+            pumps.forEach(this::joinQuietly);
+            if (deadline.isExpired()) {
+                throw RequestDeadline.exceeded();
             }
+            throw conversionFailed("Audio conversion timed out", stderrCapture.asString());
+        }
+
+        pumps.forEach(this::joinQuietly);
+        if (process.exitValue() != 0) {
+            throw conversionFailed("Audio conversion failed", stderrCapture.asString());
+        }
+    }
+
+    private ApiException mapFfmpegIoException(IOException ex) {
+        if (isMissingExecutable(ex)) {
+            return new ApiException(
+                    HttpStatus.BAD_GATEWAY,
+                    "ASR normalization backend is unavailable",
+                    "server_error",
+                    "file",
+                    "upstream_unavailable"
+            );
+        }
+        return conversionFailed("Audio conversion failed", ex.getMessage());
+    }
+
+    private void feedStdin(AudioUpload upload, OutputStream stdin) {
+        try (OutputStream output = stdin; InputStream input = upload.openStream()) {
+            input.transferTo(output);
+        } catch (IOException ignored) {
         }
     }
 
-    private Process startFfmpegProcess(SpeechKitProperties.AsrNormalizeProperties normalize, Path inputPath, Path outputPath) throws IOException {
+    private void copyQuietly(InputStream input, OutputStream output) {
+        try (input) {
+            input.transferTo(output);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private List<String> normalizeArgs(SpeechKitProperties.AsrNormalizeProperties normalize,
+                                       String input,
+                                       int targetChannels,
+                                       int channel,
+                                       String outputFormat,
+                                       String output) {
         List<String> args = new ArrayList<>();
         args.add(normalize.getFfmpegPath());
         args.add("-hide_banner");
@@ -135,21 +697,38 @@ public class AsrService {
         args.add("error");
         args.add("-y");
         args.add("-i");
-        args.add(inputPath.toString());
+        args.add(input);
         if (normalize.getMaxDurationSeconds() > 0) {
             args.add("-t");
             args.add(String.valueOf(normalize.getMaxDurationSeconds()));
         }
-        args.add("-ac");
-        args.add(String.valueOf(normalize.getTargetChannels()));
+        if (channel != WavDecoder.ALL_CHANNELS) {
+            args.add("-af");
+            args.add("pan=mono|c0=c" + channel);
+        }
+        if (targetChannels != KEEP_CHANNELS) {
+            args.add("-ac");
+            args.add(String.valueOf(targetChannels));
+        }
+        int sampleRateHertz = normalize.getTargetSampleRateHertz();
+        boolean opus = "ogg".equals(outputFormat);
         args.add("-ar");
-        args.add(String.valueOf(normalize.getTargetSampleRateHertz()));
-        args.add("-acodec");
-        args.add("pcm_s16le");
+        args.add(String.valueOf(!opus || OPUS_SAMPLE_RATES.contains(sampleRateHertz) ? sampleRateHertz : 48000));
+        if (opus) {
+            args.add("-c:a");
+            args.add("libopus");
+            args.add("-b:a");
+            args.add(String.valueOf(normalize.getOpusBitrate()));
+            args.add("-application");
+            args.add("voip");
+        } else {
+            args.add("-acodec");
+            args.add("pcm_s16le");
+        }
         args.add("-f");
-        args.add("wav");
-        args.add(outputPath.toString());
-        return new ProcessBuilder(args).start();
+        args.add(outputFormat);
+        args.add(output);
+        return args;
     }
 
     private Path resolveTempDir(String configuredTempDir) throws IOException {
@@ -161,21 +740,6 @@ public class AsrService {
         return dir;
     }
 
-    private boolean acquireNormalizationPermit() throws InterruptedException {
-        if (normalizationSemaphore == null) {
-            return false;
-        }
-        normalizationSemaphore.acquire();
-        return true;
-    }
-
-    private Semaphore createNormalizationSemaphore(Integer maxProcesses) {
-        if (maxProcesses == null || maxProcesses < 1) {
-            return null;
-        }
-        return new Semaphore(maxProcesses);
-    }
-
     private ApiException conversionFailed(String prefix, String stderrOrMessage) {
         String suffix = sanitizeErrorDetail(stderrOrMessage);
         String message = suffix.isEmpty() ? prefix : prefix + ": " + suffix;
@@ -233,32 +797,40 @@ public class AsrService {
         }
     }
 
-    private DetectedAudioFormat detectFormat(String originalFilename, String contentType, byte[] bytes) {
+    private DetectedAudioFormat detectFormat(String originalFilename, String contentType, AudioFormatSniffer.Result sniffed) {
         String extension = fileExtension(originalFilename);
         String normalizedContentType = normalizeContentType(contentType);
+        AudioFormatSniffer.Container container = sniffed.container();
+        boolean unsniffed = container == AudioFormatSniffer.Container.UNKNOWN;
 
-        boolean isWav = "wav".equals(extension)
+        boolean isWav = container == AudioFormatSniffer.Container.WAV
+                || unsniffed && ("wav".equals(extension)
                 || "audio/wav".equals(normalizedContentType)
                 || "audio/x-wav".equals(normalizedContentType)
-                || "audio/wave".equals(normalizedContentType);
+                || "audio/wave".equals(normalizedContentType));
         if (isWav) {
-            WavMetadata metadata = parseWavMetadata(bytes);
-            if (metadata != null) {
-                validatePcm16Wav(metadata);
+            WavDecoder.Header metadata = sniffed.wavHeader();
+            if (metadata != null && (!metadata.isPcm16()
+                    || metadata.channels() != 1
+                    || lpcmSampleRate(metadata.sampleRateHertz()) != metadata.sampleRateHertz())) {
+                validateConvertibleWav(metadata);
+                return new DetectedAudioFormat("lpcm", lpcmSampleRate(metadata.sampleRateHertz()), metadata);
             }
             Integer sampleRate = metadata == null ? properties.getSampleRateHertz() : metadata.sampleRateHertz();
             return new DetectedAudioFormat("lpcm", sampleRate);
         }
 
-        boolean isOgg = "ogg".equals(extension)
+        boolean isOgg = container == AudioFormatSniffer.Container.OGG_OPUS
+                || unsniffed && ("ogg".equals(extension)
                 || "audio/ogg".equals(normalizedContentType)
-                || "application/ogg".equals(normalizedContentType);
+                || "application/ogg".equals(normalizedContentType));
         if (isOgg) {
             return new DetectedAudioFormat("oggopus", null);
         }
 
-        boolean isMp3 = "mp3".equals(extension)
-                || "audio/mpeg".equals(normalizedContentType);
+        boolean isMp3 = container == AudioFormatSniffer.Container.MP3
+                || unsniffed && ("mp3".equals(extension)
+                || "audio/mpeg".equals(normalizedContentType));
         if (isMp3) {
             return new DetectedAudioFormat("mp3", null);
         }
@@ -299,84 +871,31 @@ public class AsrService {
         return value.trim().toLowerCase(Locale.ROOT);
     }
 
-    private void validatePcm16Wav(WavMetadata metadata) {
-        if (metadata.audioFormat() == 1 && metadata.bitsPerSample() == 16) {
+    private void validateConvertibleWav(WavDecoder.Header metadata) {
+        if (metadata.isDecodable()) {
             return;
         }
         throw new ApiException(
                 HttpStatus.BAD_REQUEST,
-                "WAV must be 16-bit PCM for ASR. Convert with ffmpeg: ffmpeg -i input.wav -ac 1 -ar 48000 -sample_fmt s16 output.wav",
+                "WAV must be PCM (8/16/24/32-bit), IEEE float, A-law or mu-law for ASR. Convert with ffmpeg: ffmpeg -i input.wav -ac 1 -ar 48000 -sample_fmt s16 output.wav",
                 "invalid_request_error",
                 "file",
                 "unsupported_media_type"
         );
     }
 
-    private WavMetadata parseWavMetadata(byte[] bytes) {
-        if (bytes == null || bytes.length < 20) {
-            return null;
-        }
-        if (!hasAscii(bytes, 0, "RIFF") || !hasAscii(bytes, 8, "WAVE")) {
-            return null;
-        }
-
-        int offset = 12;
-        while (offset + 8 <= bytes.length) {
-            int chunkHeaderOffset = offset;
-            int dataOffset = offset + 8;
-            long chunkSize = uint32Le(bytes, offset + 4);
-            long nextOffset = dataOffset + chunkSize + (chunkSize % 2);
-            if (nextOffset > bytes.length) {
-                return null;
-            }
-
-            if (hasAscii(bytes, chunkHeaderOffset, "fmt ")) {
-                if (chunkSize < 16 || dataOffset + 16 > bytes.length) {
-                    return null;
-                }
-                int audioFormat = uint16Le(bytes, dataOffset);
-                int sampleRateHertz = (int) uint32Le(bytes, dataOffset + 4);
-                int bitsPerSample = uint16Le(bytes, dataOffset + 14);
-                if (sampleRateHertz < 8000) {
-                    return null;
-                }
-                return new WavMetadata(audioFormat, bitsPerSample, sampleRateHertz);
-            }
-
-            offset = (int) nextOffset;
-        }
-
-        return null;
-    }
-
-    private boolean hasAscii(byte[] bytes, int offset, String expected) {
-        if (offset < 0 || offset + expected.length() > bytes.length) {
-            return false;
+    private static int lpcmSampleRate(int sampleRateHertz) {
+        if (sampleRateHertz >= 48000) {
+            return 48000;
         }
-        byte[] expectedBytes = expected.getBytes(StandardCharsets.US_ASCII);
-        for (int i = 0; i < expectedBytes.length; i++) {
-            if (bytes[offset + i] != expectedBytes[i]) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private int uint16Le(byte[] bytes, int offset) {
-        return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+        return sampleRateHertz >= 16000 ? 16000 : 8000;
     }
 
-    private long uint32Le(byte[] bytes, int offset) {
-        return ((long) bytes[offset] & 0xff)
-                | (((long) bytes[offset + 1] & 0xff) << 8)
-                | (((long) bytes[offset + 2] & 0xff) << 16)
-                | (((long) bytes[offset + 3] & 0xff) << 24);
-    }
+    private record DetectedAudioFormat(String format, Integer sampleRateHertz, WavDecoder.Header convertFromWav) {
 
-    private record DetectedAudioFormat(String format, Integer sampleRateHertz) {
-    }
-
-    private record WavMetadata(int audioFormat, int bitsPerSample, int sampleRateHertz) {
+        private DetectedAudioFormat(String format, Integer sampleRateHertz) {
+            this(format, sampleRateHertz, null);
+        }
     }
 
     private static final class StderrCapture {
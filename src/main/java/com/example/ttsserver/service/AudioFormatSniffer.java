@@ -0,0 +1,227 @@
+package com.example.ttsserver.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+final class AudioFormatSniffer {
+
+    static final int PREFIX_BYTES = 64 * 1024;
+    private static final int OGG_TAIL_BYTES = 64 * 1024;
+    private static final int OGG_PAGE_HEADER_BYTES = 27;
+    private static final int OPUS_GRANULE_RATE = 48000;
+    private static final int[] MPEG1_LAYER3_KBPS = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 0};
+    private static final int[] MPEG2_LAYER3_KBPS = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, 0};
+    private static final int[] MPEG1_SAMPLE_RATES = {44100, 48000, 32000, 0};
+
+    private AudioFormatSniffer() {
+    }
+
+    static Result sniff(AudioUpload upload, byte[] prefix) throws IOException {
+        if (startsWith(prefix, 0, "RIFF") && startsWith(prefix, 8, "WAVE")) {
+            return wav(upload, WavDecoder.parseHeader(prefix));
+        }
+        if (startsWith(prefix, 0, "OggS")) {
+            return ogg(upload, prefix);
+        }
+        if (startsWith(prefix, 0, "ID3") || isMp3FrameSync(prefix, 0)) {
+            return mp3(upload, prefix);
+        }
+        if (startsWith(prefix, 0, "fLaC")) {
+            return flac(prefix);
+        }
+        if (startsWith(prefix, 4, "ftyp")) {
+            return new Result(Container.MP4, null, null, -1);
+        }
+        if (prefix.length >= 4
+                && (prefix[0] & 0xFF) == 0x1A && (prefix[1] & 0xFF) == 0x45
+                && (prefix[2] & 0xFF) == 0xDF && (prefix[3] & 0xFF) == 0xA3) {
+            return new Result(Container.WEBM, null, null, -1);
+        }
+        return Result.UNKNOWN;
+    }
+
+    private static Result wav(AudioUpload upload, WavDecoder.Header header) {
+        if (header == null || header.dataOffset() < 0 || header.blockAlign() <= 0 || header.sampleRateHertz() <= 0) {
+            return new Result(Container.WAV, null, null, -1, header, header == null ? 0 : header.channels());
+        }
+        long available = Math.max(0, upload.size() - header.dataOffset());
+        long dataLength = header.dataLength() > 0 ? Math.min(header.dataLength(), available) : available;
+        long durationMillis = dataLength / header.blockAlign() * 1000 / header.sampleRateHertz();
+        boolean native16 = header.isPcm16() && header.channels() == 1 && isLpcmRate(header.sampleRateHertz());
+        return new Result(Container.WAV, native16 ? "lpcm" : null, header.sampleRateHertz(), durationMillis, header, header.channels());
+    }
+
+    private static Result ogg(AudioUpload upload, byte[] prefix) throws IOException {
+        if (prefix.length <= OGG_PAGE_HEADER_BYTES) {
+            return new Result(Container.OGG, null, null, -1);
+        }
+        int payload = OGG_PAGE_HEADER_BYTES + (prefix[26] & 0xFF);
+        if (startsWith(prefix, payload, "OpusHead") && prefix.length >= payload + 12) {
+            int preSkip = (prefix[payload + 10] & 0xFF) | (prefix[payload + 11] & 0xFF) << 8;
+            long durationMillis = oggDuration(upload, preSkip, OPUS_GRANULE_RATE);
+            return new Result(Container.OGG_OPUS, "oggopus", null, durationMillis, null, prefix[payload + 9] & 0xFF);
+        }
+        if (prefix.length >= payload + 16 && prefix[payload] == 1 && startsWith(prefix, payload + 1, "vorbis")) {
+            int sampleRate = (int) uint32Le(prefix, payload + 12);
+            return new Result(Container.OGG, null, null, oggDuration(upload, 0, sampleRate), null, prefix[payload + 11] & 0xFF);
+        }
+        return new Result(Container.OGG, null, null, -1);
+    }
+
+    private static long oggDuration(AudioUpload upload, int preSkip, int granuleRate) throws IOException {
+        if (granuleRate <= 0) {
+            return -1;
+        }
+        long tailOffset = Math.max(0, upload.size() - OGG_TAIL_BYTES);
+        byte[] tail = upload.slice(tailOffset, OGG_TAIL_BYTES).readPrefix(OGG_TAIL_BYTES);
+        long granule = lastGranulePosition(tail);
+        return granule < 0 ? -1 : Math.max(0, granule - preSkip) * 1000 / granuleRate;
+    }
+
+    private static Result flac(byte[] prefix) {
+        int streamInfo = 8;
+        if (prefix.length < streamInfo + 18 || (prefix[4] & 0x7F) != 0) {
+            return new Result(Container.FLAC, null, null, -1);
+        }
+        int sampleRate = (prefix[streamInfo + 10] & 0xFF) << 12
+                | (prefix[streamInfo + 11] & 0xFF) << 4
+                | (prefix[streamInfo + 12] & 0xFF) >> 4;
+        long totalSamples = (prefix[streamInfo + 13] & 0x0FL) << 32
+                | (prefix[streamInfo + 14] & 0xFFL) << 24
+                | (prefix[streamInfo + 15] & 0xFF) << 16
+                | (prefix[streamInfo + 16] & 0xFF) << 8
+                | prefix[streamInfo + 17] & 0xFF;
+        int channels = ((prefix[streamInfo + 12] >> 1) & 0x07) + 1;
+        long durationMillis = sampleRate == 0 || totalSamples == 0 ? -1 : totalSamples * 1000 / sampleRate;
+        return new Result(Container.FLAC, null, null, durationMillis, null, channels);
+    }
+
+    private static long lastGranulePosition(byte[] tail) {
+        for (int i = tail.length - OGG_PAGE_HEADER_BYTES; i >= 0; i--) {
+            if (startsWith(tail, i, "OggS") && tail[i + 4] == 0) {
+                long granule = 0;
+                for (int b = 7; b >= 0; b--) {
+                    granule = granule << 8 | (tail[i + 6 + b] & 0xFF);
+                }
+                if (granule >= 0) {
+                    return granule;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static Result mp3(AudioUpload upload, byte[] prefix) {
+        long audioStart = 0;
+        if (startsWith(prefix, 0, "ID3") && prefix.length >= 10) {
+            audioStart = 10 + ((prefix[6] & 0x7F) << 21 | (prefix[7] & 0x7F) << 14 | (prefix[8] & 0x7F) << 7 | prefix[9] & 0x7F);
+            if ((prefix[5] & 0x10) != 0) {
+                audioStart += 10;
+            }
+        }
+        if (audioStart + 4 > prefix.length) {
+            return new Result(Container.MP3, "mp3", null, -1);
+        }
+        int frame = (int) audioStart;
+        if (!isMp3FrameSync(prefix, frame)) {
+            return startsWith(prefix, 0, "ID3") ? Result.UNKNOWN : new Result(Container.MP3, "mp3", null, -1);
+        }
+        int version = (prefix[frame + 1] >> 3) & 0x03;
+        boolean mpeg1 = version == 3;
+        int bitrateKbps = (mpeg1 ? MPEG1_LAYER3_KBPS : MPEG2_LAYER3_KBPS)[(prefix[frame + 2] >> 4) & 0x0F];
+        int sampleRate = MPEG1_SAMPLE_RATES[(prefix[frame + 2] >> 2) & 0x03] / (mpeg1 ? 1 : version == 2 ? 2 : 4);
+        boolean mono = ((prefix[frame + 3] >> 6) & 0x03) == 3;
+        int channels = mono ? 1 : 2;
+        int samplesPerFrame = mpeg1 ? 1152 : 576;
+        int xing = frame + 4 + (mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+        if ((startsWith(prefix, xing, "Xing") || startsWith(prefix, xing, "Info"))
+                && prefix.length >= xing + 12 && (prefix[xing + 7] & 0x01) != 0 && sampleRate > 0) {
+            long frames = uint32Be(prefix, xing + 8);
+            return new Result(Container.MP3, "mp3", null, frames * samplesPerFrame * 1000 / sampleRate, null, channels);
+        }
+        int vbri = frame + 36;
+        if (startsWith(prefix, vbri, "VBRI") && prefix.length >= vbri + 18 && sampleRate > 0) {
+            long frames = uint32Be(prefix, vbri + 14);
+            return new Result(Container.MP3, "mp3", null, frames * samplesPerFrame * 1000 / sampleRate, null, channels);
+        }
+        if (bitrateKbps == 0) {
+            return new Result(Container.MP3, "mp3", null, -1, null, channels);
+        }
+        return new Result(Container.MP3, "mp3", null, (upload.size() - audioStart) * 8 / bitrateKbps, null, channels);
+    }
+
+    private static boolean isMp3FrameSync(byte[] bytes, int offset) {
+        if (offset + 4 > bytes.length) {
+            return false;
+        }
+        int b1 = bytes[offset + 1] & 0xFF;
+        int b2 = bytes[offset + 2] & 0xFF;
+        return (bytes[offset] & 0xFF) == 0xFF
+                && (b1 & 0xE0) == 0xE0
+                && ((b1 >> 3) & 0x03) != 1
+                && ((b1 >> 1) & 0x03) == 1
+                && (b2 >> 4) != 0x0F
+                && ((b2 >> 2) & 0x03) != 3;
+    }
+
+    private static long uint32Be(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    private static long uint32Le(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFFL) << 24;
+    }
+
+    private static boolean isLpcmRate(int sampleRateHertz) {
+        return sampleRateHertz == 8000 || sampleRateHertz == 16000 || sampleRateHertz == 48000;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, String magic) {
+        if (offset < 0 || offset + magic.length() > bytes.length) {
+            return false;
+        }
+        byte[] expected = magic.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    enum Container {
+        WAV, OGG_OPUS, OGG, MP3, FLAC, MP4, WEBM, UNKNOWN
+    }
+
+    record Result(Container container,
+                  String nativeFormat,
+                  Integer sampleRateHertz,
+                  long durationMillis,
+                  WavDecoder.Header wavHeader,
+                  int channels) {
+
+        static final Result UNKNOWN = new Result(Container.UNKNOWN, null, null, -1);
+
+        Result(Container container, String nativeFormat, Integer sampleRateHertz, long durationMillis) {
+            this(container, nativeFormat, sampleRateHertz, durationMillis, null, 0);
+        }
+
+        boolean isNative() {
+            return nativeFormat != null;
+        }
+
+        boolean hasDuration() {
+            return durationMillis >= 0;
+        }
+
+        boolean isStreamable() {
+            return container == Container.WAV
+                    || container == Container.OGG_OPUS
+                    || container == Container.OGG
+                    || container == Container.MP3
+                    || container == Container.FLAC;
+        }
+    }
+}
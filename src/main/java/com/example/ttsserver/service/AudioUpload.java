@@ -0,0 +1,237 @@
+package com.example.ttsserver.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+public interface AudioUpload {
+
+    long size();
+
+    InputStream openStream() throws IOException;
+
+    default byte[] readPrefix(int maxBytes) throws IOException {
+        try (InputStream in = openStream()) {
+            return in.readNBytes(maxBytes);
+        }
+    }
+
+    default Path asFile(Path spoolDirectory) throws IOException {
+        return null;
+    }
+
+    default AudioUpload slice(long offset, long length) {
+        AudioUpload source = this;
+        long sliceLength = Math.max(0, Math.min(length, size() - offset));
+        return new AudioUpload() {
+            @Override
+            public long size() {
+                return sliceLength;
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                InputStream input = source.openStream();
+                input.skipNBytes(offset);
+                return new BoundedInputStream(input, sliceLength);
+            }
+        };
+    }
+
+    static AudioUpload of(byte[] bytes) {
+        return new AudioUpload() {
+            @Override
+            public long size() {
+                return bytes.length;
+            }
+
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            public byte[] readPrefix(int maxBytes) {
+                return Arrays.copyOf(bytes, Math.min(bytes.length, maxBytes));
+            }
+
+            @Override
+            public AudioUpload slice(long offset, long length) {
+                int from = (int) Math.min(offset, bytes.length);
+                int sliceLength = (int) Math.min(bytes.length - from, Math.max(0, length));
+                return new AudioUpload() {
+                    @Override
+                    public long size() {
+                        return sliceLength;
+                    }
+
+                    @Override
+                    public InputStream openStream() {
+                        return new ByteArrayInputStream(bytes, from, sliceLength);
+                    }
+                };
+            }
+        };
+    }
+
+    static AudioUpload concat(List<AudioUpload> parts) {
+        long size = 0;
+        for (AudioUpload part : parts) {
+            size += part.size();
+        }
+        long totalSize = size;
+        return new AudioUpload() {
+            @Override
+            public long size() {
+                return totalSize;
+            }
+
+            @Override
+            public InputStream openStream() {
+                Iterator<AudioUpload> remaining = parts.iterator();
+                return new SequenceInputStream(new Enumeration<>() {
+                    @Override
+                    public boolean hasMoreElements() {
+                        return remaining.hasNext();
+                    }
+
+                    @Override
+                    public InputStream nextElement() {
+                        try {
+                            return remaining.next().openStream();
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    static MultipartUpload of(MultipartFile file) {
+        return new MultipartUpload(file);
+    }
+
+    static AudioUpload of(Path path) throws IOException {
+        long size = Files.size(path);
+        return new AudioUpload() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return Files.newInputStream(path);
+            }
+
+            @Override
+            public Path asFile(Path spoolDirectory) {
+                return path;
+            }
+        };
+    }
+
+    final class MultipartUpload implements AudioUpload, Closeable {
+
+        private final MultipartFile file;
+        private Path spooled;
+
+        private MultipartUpload(MultipartFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public long size() {
+            return file.getSize();
+        }
+
+        @Override
+        public synchronized InputStream openStream() throws IOException {
+            return spooled != null ? Files.newInputStream(spooled) : file.getInputStream();
+        }
+
+        @Override
+        public synchronized Path asFile(Path spoolDirectory) throws IOException {
+            if (spooled == null) {
+                Path target = Files.createTempFile(spoolDirectory, "asr-input-", ".bin");
+                try {
+                    file.transferTo(target.toFile());
+                } catch (IOException | RuntimeException ex) {
+                    Files.deleteIfExists(target);
+                    throw ex;
+                }
+                spooled = target;
+            }
+            return spooled;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    final class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream input, long limit) {
+            super(input);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
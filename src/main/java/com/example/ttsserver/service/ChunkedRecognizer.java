@@ -0,0 +1,196 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class ChunkedRecognizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedRecognizer.class);
+
+    private final PcmRecognizer pcmRecognizer;
+    private final SpeechKitProperties.LongAudioProperties properties;
+
+    ChunkedRecognizer(SpeechKitClient speechKitClient, SpeechKitProperties.LongAudioProperties properties) {
+        this((pcm, sampleRateHertz, channels, filename, language) ->
+                speechKitClient.recognize(pcm, filename, language, "lpcm", sampleRateHertz), properties);
+    }
+
+    ChunkedRecognizer(PcmRecognizer pcmRecognizer, SpeechKitProperties.LongAudioProperties properties) {
+        this.pcmRecognizer = pcmRecognizer;
+        this.properties = properties;
+    }
+
+    boolean shouldSplit(long pcmBytes, int sampleRateHertz, int channels) {
+        return properties.isEnabled() && pcmBytes > windowBytes(sampleRateHertz, channels);
+    }
+
+    String recognize(AudioUpload pcm, int sampleRateHertz, int channels, String filename, String language) {
+        return recognize(pcm, sampleRateHertz, channels, List.of(), filename, language);
+    }
+
+    String recognize(AudioUpload pcm,
+                     int sampleRateHertz,
+                     int channels,
+                     List<Long> splitPoints,
+                     String filename,
+                     String language) {
+        int frameBytes = 2 * channels;
+        List<Window> windows = windows(
+                pcm.size(),
+                windowBytes(sampleRateHertz, channels),
+                alignedBytes(properties.getOverlap(), sampleRateHertz, frameBytes),
+                frameBytes,
+                splitPoints
+        );
+        int parallelism = Math.max(1, Math.min(properties.getParallelism(), windows.size()));
+        log.info("Long-audio recognition windows={} parallelism={} bytes={}", windows.size(), parallelism, pcm.size());
+
+        RequestDeadline deadline = RequestDeadline.current();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("asr-window-", 0).factory());
+        try {
+            List<Future<String>> results = new ArrayList<>(windows.size());
+            for (Window window : windows) {
+                AudioUpload slice = pcm.slice(window.offset(), window.length());
+                results.add(executor.submit(() -> {
+                    if (mdc != null) {
+                        MDC.setContextMap(mdc);
+                    }
+                    try (RequestDeadline.Scope ignored = deadline.attach()) {
+                        return pcmRecognizer.recognize(slice, sampleRateHertz, channels, filename, language);
+                    } finally {
+                        MDC.clear();
+                    }
+                }));
+            }
+            List<String> texts = new ArrayList<>(results.size());
+            for (Future<String> result : results) {
+                texts.add(await(result));
+            }
+            return stitch(texts, windows, properties.getMaxOverlapWords());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String await(Future<String> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw RequestDeadline.exceeded();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private long windowBytes(int sampleRateHertz, int channels) {
+        int frameBytes = 2 * channels;
+        long maxBytes = SpeechKitClient.SYNC_MAX_BYTES - SpeechKitClient.SYNC_MAX_BYTES % frameBytes;
+        return Math.min(alignedBytes(properties.getWindow(), sampleRateHertz, frameBytes), maxBytes);
+    }
+
+    private static long alignedBytes(Duration duration, int sampleRateHertz, int frameBytes) {
+        long frames = duration == null ? 0 : duration.toMillis() * sampleRateHertz / 1000;
+        return frames * frameBytes;
+    }
+
+    static List<Window> windows(long totalBytes, long windowBytes, long overlapBytes, int frameBytes, List<Long> splitPoints) {
+        long window = Math.max(frameBytes, windowBytes - windowBytes % frameBytes);
+        long overlap = Math.max(0, Math.min(overlapBytes - overlapBytes % frameBytes, window / 2));
+        List<Window> windows = new ArrayList<>();
+        long offset = 0;
+        while (offset < totalBytes) {
+            long end = offset + window;
+            if (end >= totalBytes) {
+                windows.add(new Window(offset, totalBytes - offset));
+                break;
+            }
+            long split = lastSplitPoint(splitPoints, offset + window / 2, end);
+            if (split > 0) {
+                windows.add(new Window(offset, split - offset));
+                offset = split;
+            } else {
+                windows.add(new Window(offset, window));
+                offset = end - overlap;
+            }
+        }
+        return windows;
+    }
+
+    private static long lastSplitPoint(List<Long> splitPoints, long from, long to) {
+        long split = -1;
+        for (long point : splitPoints) {
+            if (point > to) {
+                break;
+            }
+            if (point >= from) {
+                split = point;
+            }
+        }
+        return split;
+    }
+
+    static String stitch(List<String> texts, List<Window> windows, int maxOverlapWords) {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            List<String> next = Arrays.asList(text.trim().split("\\s+"));
+            int overlap = i > 0 && overlaps(windows.get(i - 1), windows.get(i))
+                    ? overlappingWords(words, next, maxOverlapWords)
+                    : 0;
+            words.addAll(next.subList(overlap, next.size()));
+        }
+        return String.join(" ", words);
+    }
+
+    private static boolean overlaps(Window previous, Window next) {
+        return next.offset() < previous.offset() + previous.length();
+    }
+
+    private static int overlappingWords(List<String> previous, List<String> next, int maxOverlapWords) {
+        int max = Math.min(maxOverlapWords, Math.min(previous.size(), next.size()));
+        for (int k = max; k > 0; k--) {
+            boolean matches = true;
+            for (int i = 0; i < k && matches; i++) {
+                matches = normalizeWord(previous.get(previous.size() - k + i)).equals(normalizeWord(next.get(i)));
+            }
+            if (matches) {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    private static String normalizeWord(String word) {
+        return word.replaceAll("[\\p{Punct}«»…—]", "").toLowerCase(Locale.ROOT);
+    }
+
+    record Window(long offset, long length) {
+    }
+
+    @FunctionalInterface
+    interface PcmRecognizer {
+
+        String recognize(AudioUpload pcm, int sampleRateHertz, int channels, String filename, String language);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(prefix = "app.speechkit.token-store", name = "type", havingValue = "file")
+public class EncryptedFileIamTokenStore implements IamTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(EncryptedFileIamTokenStore.class);
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final Path directory;
+    private final SecretKeySpec secretKey;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public EncryptedFileIamTokenStore(SpeechKitProperties properties) {
+        this(Path.of(properties.getTokenStore().getDirectory()), properties.getTokenStore().getEncryptionKey());
+    }
+
+    EncryptedFileIamTokenStore(Path directory, String encryptionKey) {
+        if (encryptionKey == null || encryptionKey.isBlank()) {
+            throw new IllegalStateException("app.speechkit.token-store.encryption-key must be set for the file token store");
+        }
+        this.directory = directory;
+        this.secretKey = new SecretKeySpec(sha256(encryptionKey.getBytes(StandardCharsets.UTF_8)), "AES");
+    }
+
+    @Override
+    public Optional<StoredToken> load(String key) {
+        Path path = pathFor(key);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            byte[] iv = new byte[IV_BYTES];
+            buffer.get(iv);
+            byte[] ciphertext = new byte[buffer.remaining()];
+            buffer.get(ciphertext);
+
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(key.getBytes(StandardCharsets.UTF_8));
+            String plaintext = new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+
+            int separator = plaintext.indexOf('\n');
+            if (separator <= 0) {
+                return Optional.empty();
+            }
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(plaintext.substring(0, separator)));
+            return Optional.of(new StoredToken(plaintext.substring(separator + 1), expiresAt));
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            log.warn("Ignoring unreadable persisted IAM token path={} error={}", path, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(String key, StoredToken token) {
+        Path path = pathFor(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(key.getBytes(StandardCharsets.UTF_8));
+            String plaintext = token.expiresAt().getEpochSecond() + "\n" + token.value();
+            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+            temp = createPrivateTempFile();
+            Files.write(temp, ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array());
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | GeneralSecurityException ex) {
+            log.warn("Failed to persist IAM token path={} error={}", path, ex.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private Path createPrivateTempFile() throws IOException {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempFile(directory, ".iam-token-", ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        return Files.createTempFile(directory, ".iam-token-", ".tmp");
+    }
+
+    private Path pathFor(String key) {
+        return directory.resolve(HexFormat.of().formatHex(sha256(key.getBytes(StandardCharsets.UTF_8))) + ".token");
+    }
+
+    private static byte[] sha256(byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.ttsserver.service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface IamTokenStore {
+
+    IamTokenStore NONE = new IamTokenStore() {
+        @Override
+        public Optional<StoredToken> load(String key) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void save(String key, StoredToken token) {
+        }
+    };
+
+    Optional<StoredToken> load(String key);
+
+    void save(String key, StoredToken token);
+
+    record StoredToken(String value, Instant expiresAt) {
+    }
+}
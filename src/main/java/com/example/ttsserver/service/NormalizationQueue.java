@@ -0,0 +1,107 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class NormalizationQueue {
+
+    private final Semaphore permits;
+    private final int maxProcesses;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    NormalizationQueue(Integer maxProcesses, int maxQueued, Duration maxWait, MeterRegistry meterRegistry) {
+        this.maxProcesses = maxProcesses == null || maxProcesses < 1
+                ? Runtime.getRuntime().availableProcessors()
+                : maxProcesses;
+        this.permits = new Semaphore(this.maxProcesses, true);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWaitNanos = maxWait == null || maxWait.isNegative() ? 0 : maxWait.toNanos();
+
+        Gauge.builder("asr.normalization.queue.depth", waiting, AtomicInteger::get)
+                .description("Requests waiting for an ASR normalization slot")
+                .register(meterRegistry);
+        Gauge.builder("asr.normalization.active", this, queue -> queue.maxProcesses - queue.permits.availablePermits())
+                .description("ASR normalizations currently running")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("asr.normalization.queue.wait")
+                .description("Time spent waiting for an ASR normalization slot")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueFullRejections = rejections(meterRegistry, "queue_full");
+        this.timeoutRejections = rejections(meterRegistry, "timeout");
+    }
+
+    Permit acquire(RequestDeadline deadline) throws InterruptedException {
+        if (permits.tryAcquire()) {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+            return permits::release;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            queueFullRejections.increment();
+            throw busy();
+        }
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(deadline.boundNanos(maxWaitNanos), TimeUnit.NANOSECONDS);
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            if (deadline.isExpired()) {
+                throw RequestDeadline.exceeded();
+            }
+            timeoutRejections.increment();
+            throw busy();
+        }
+        return permits::release;
+    }
+
+    int maxProcesses() {
+        return maxProcesses;
+    }
+
+    int waiting() {
+        return waiting.get();
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("asr.normalization.rejected")
+                .description("ASR requests rejected while waiting for a normalization slot")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static ApiException busy() {
+        return new ApiException(
+                HttpStatus.TOO_MANY_REQUESTS,
+                "Too many audio normalizations in progress",
+                "rate_limit_error",
+                "file",
+                "rate_limit_exceeded"
+        );
+    }
+
+    @FunctionalInterface
+    interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.error.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public final class RequestDeadline {
+
+    private static final RequestDeadline UNBOUNDED = new RequestDeadline(false, 0);
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    private final boolean bounded;
+    private final long deadlineNanos;
+    private final List<Runnable> cancelCallbacks = new ArrayList<>();
+    private boolean cancelled;
+
+    private RequestDeadline(boolean bounded, long deadlineNanos) {
+        this.bounded = bounded;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static RequestDeadline after(Duration timeout) {
+        return new RequestDeadline(true, System.nanoTime() + Math.max(0, timeout.toNanos()));
+    }
+
+    public static RequestDeadline unbounded() {
+        return UNBOUNDED;
+    }
+
+    public static RequestDeadline current() {
+        RequestDeadline deadline = CURRENT.get();
+        return deadline == null ? UNBOUNDED : deadline;
+    }
+
+    public Scope attach() {
+        RequestDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public long remainingNanos() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public long boundMillis(long configuredMillis) {
+        return Math.min(configuredMillis, remainingMillis());
+    }
+
+    public long boundNanos(long configuredNanos) {
+        return Math.min(configuredNanos, remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return bounded && (isCancelled() || deadlineNanos - System.nanoTime() <= 0);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkNotExpired() {
+        if (isExpired()) {
+            throw exceeded();
+        }
+    }
+
+    public Registration onCancel(Runnable callback) {
+        if (!bounded) {
+            return () -> {
+            };
+        }
+        synchronized (this) {
+            if (!cancelled) {
+                cancelCallbacks.add(callback);
+                return () -> {
+                    synchronized (RequestDeadline.this) {
+                        cancelCallbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> {
+        };
+    }
+
+    public void cancel() {
+        if (!bounded) {
+            return;
+        }
+        List<Runnable> callbacks;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            callbacks = new ArrayList<>(cancelCallbacks);
+            cancelCallbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    public static ApiException exceeded() {
+        return new ApiException(
+                HttpStatus.GATEWAY_TIMEOUT,
+                "Request deadline exceeded",
+                "server_error",
+                null,
+                "deadline_exceeded"
+        );
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ttsserver.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class SpeechKitAccount {
+
+    private final String id;
+    private final String folderId;
+    private final String apiKey;
+    private final int weight;
+    private final TokenProvider tokenProvider;
+    private final UpstreamRateLimiter rateLimiter;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean draining;
+    private volatile long drainedUntilNanos;
+
+    SpeechKitAccount(String id,
+                     String folderId,
+                     String apiKey,
+                     int weight,
+                     TokenProvider tokenProvider,
+                     UpstreamRateLimiter rateLimiter) {
+        this.id = id;
+        this.folderId = folderId;
+        this.apiKey = apiKey;
+        this.weight = Math.max(1, weight);
+        this.tokenProvider = tokenProvider;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String folderId() {
+        return folderId;
+    }
+
+    public String apiKey() {
+        return apiKey;
+    }
+
+    public int weight() {
+        return weight;
+    }
+
+    public TokenProvider tokenProvider() {
+        return tokenProvider;
+    }
+
+    public UpstreamRateLimiter rateLimiter() {
+        return rateLimiter;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    AtomicInteger inFlightCounter() {
+        return inFlight;
+    }
+
+    long drainedUntilNanos() {
+        return drainedUntilNanos;
+    }
+
+    void drainUntil(long nanos) {
+        this.drainedUntilNanos = nanos;
+        this.draining = true;
+    }
+
+    boolean isDrained(long nowNanos) {
+        return draining && drainedUntilNanos - nowNanos > 0;
+    }
+}
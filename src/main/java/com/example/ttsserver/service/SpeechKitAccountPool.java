@@ -0,0 +1,152 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+@Component
+public class SpeechKitAccountPool {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeechKitAccountPool.class);
+
+    private final List<SpeechKitAccount> accounts;
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    @Autowired
+    public SpeechKitAccountPool(SpeechKitProperties properties,
+                                TokenProvider tokenProvider,
+                                RestClient iamRestClient,
+                                ObjectMapper objectMapper,
+                                ObjectProvider<IamTokenStore> tokenStore) {
+        this(properties, createAccounts(properties, tokenProvider, iamRestClient, objectMapper,
+                tokenStore.getIfAvailable(() -> IamTokenStore.NONE)), System::nanoTime);
+    }
+
+    SpeechKitAccountPool(SpeechKitProperties properties, List<SpeechKitAccount> accounts, LongSupplier nanoClock) {
+        if (accounts.isEmpty()) {
+            throw new IllegalStateException("At least one SpeechKit account must be configured");
+        }
+        this.accounts = List.copyOf(accounts);
+        Duration cooldown = properties.getAccountCooldown() == null ? Duration.ZERO : properties.getAccountCooldown();
+        this.cooldownNanos = Math.max(0, cooldown.toNanos());
+        this.nanoClock = nanoClock;
+    }
+
+    public static SpeechKitAccountPool single(SpeechKitProperties properties, TokenProvider tokenProvider) {
+        return new SpeechKitAccountPool(properties, List.of(primaryAccount(properties, tokenProvider)), System::nanoTime);
+    }
+
+    @PreDestroy
+    void close() {
+        for (SpeechKitAccount account : accounts) {
+            if (account.tokenProvider() instanceof YandexIamTokenProvider provider) {
+                provider.close();
+            }
+        }
+    }
+
+    public List<SpeechKitAccount> accounts() {
+        return accounts;
+    }
+
+    public SpeechKitAccount acquire() {
+        SpeechKitAccount selected = select();
+        selected.inFlightCounter().incrementAndGet();
+        return selected;
+    }
+
+    public void release(SpeechKitAccount account) {
+        account.inFlightCounter().decrementAndGet();
+    }
+
+    public void markThrottled(SpeechKitAccount account) {
+        if (accounts.size() < 2 || cooldownNanos == 0) {
+            return;
+        }
+        account.drainUntil(nanoClock.getAsLong() + cooldownNanos);
+        log.warn("SpeechKit account drained after quota error account={} cooldown_ms={}",
+                account.id(), Duration.ofNanos(cooldownNanos).toMillis());
+    }
+
+    private SpeechKitAccount select() {
+        int size = accounts.size();
+        if (size == 1) {
+            return accounts.get(0);
+        }
+
+        long now = nanoClock.getAsLong();
+        int start = Math.floorMod(cursor.getAndIncrement(), size);
+        SpeechKitAccount best = null;
+        double bestLoad = Double.MAX_VALUE;
+        SpeechKitAccount soonestAvailable = null;
+        for (int i = 0; i < size; i++) {
+            SpeechKitAccount candidate = accounts.get((start + i) % size);
+            if (candidate.isDrained(now)) {
+                if (soonestAvailable == null || candidate.drainedUntilNanos() - soonestAvailable.drainedUntilNanos() < 0) {
+                    soonestAvailable = candidate;
+                }
+                continue;
+            }
+            double load = (double) candidate.inFlight() / candidate.weight();
+            if (load < bestLoad) {
+                best = candidate;
+                bestLoad = load;
+            }
+        }
+        return best != null ? best : soonestAvailable;
+    }
+
+    private static List<SpeechKitAccount> createAccounts(SpeechKitProperties properties,
+                                                        TokenProvider primaryTokenProvider,
+                                                        RestClient iamRestClient,
+                                                        ObjectMapper objectMapper,
+                                                        IamTokenStore tokenStore) {
+        List<SpeechKitProperties.AccountProperties> configured = properties.getAccounts();
+        if (configured == null || configured.isEmpty()) {
+            return List.of(primaryAccount(properties, primaryTokenProvider));
+        }
+
+        List<SpeechKitAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < configured.size(); i++) {
+            SpeechKitProperties.AccountProperties account = configured.get(i);
+            String id = account.getId() == null || account.getId().isBlank() ? "account-" + i : account.getId();
+            TokenProvider tokenProvider = new YandexIamTokenProvider(
+                    properties, account, iamRestClient, objectMapper, Clock.systemUTC(), tokenStore);
+            accounts.add(new SpeechKitAccount(
+                    id,
+                    account.getFolderId(),
+                    account.getApiKey(),
+                    account.getWeight(),
+                    tokenProvider,
+                    new UpstreamRateLimiter(properties.getRateLimit())
+            ));
+        }
+        return accounts;
+    }
+
+    private static SpeechKitAccount primaryAccount(SpeechKitProperties properties, TokenProvider tokenProvider) {
+        return new SpeechKitAccount(
+                "default",
+                properties.getFolderId(),
+                properties.getApiKey(),
+                1,
+                tokenProvider,
+                new UpstreamRateLimiter(properties.getRateLimit())
+        );
+    }
+}
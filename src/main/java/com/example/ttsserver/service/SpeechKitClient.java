@@ -7,16 +7,20 @@ import com.example.ttsserver.error.ApiException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,11 +29,17 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 @Component
 public class SpeechKitClient {
 
+    static final long SYNC_MAX_BYTES = 1024L * 1024L;
     private static final Logger log = LoggerFactory.getLogger(SpeechKitClient.class);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private static final String TTS_SYNTHESIS_PATH = "/tts/v3/utteranceSynthesis";
@@ -37,16 +47,30 @@ public class SpeechKitClient {
     private final RestClient ttsRestClient;
     private final RestClient sttRestClient;
     private final SpeechKitProperties properties;
-    private final TokenProvider tokenProvider;
+    private final SpeechKitAccountPool accountPool;
+    private final UpstreamEndpointSelector ttsEndpoints;
+    private final UpstreamEndpointSelector sttEndpoints;
 
     public SpeechKitClient(RestClient ttsRestClient,
                            RestClient sttRestClient,
                            SpeechKitProperties properties,
                            TokenProvider tokenProvider) {
+        this(ttsRestClient, sttRestClient, properties, SpeechKitAccountPool.single(properties, tokenProvider));
+    }
+
+    @Autowired
+    public SpeechKitClient(RestClient ttsRestClient,
+                           RestClient sttRestClient,
+                           SpeechKitProperties properties,
+                           SpeechKitAccountPool accountPool) {
         this.ttsRestClient = ttsRestClient;
         this.sttRestClient = sttRestClient;
         this.properties = properties;
-        this.tokenProvider = tokenProvider;
+        this.accountPool = accountPool;
+        this.ttsEndpoints = new UpstreamEndpointSelector(
+                "tts", properties.getBaseUrl(), properties.getBaseUrls(), properties.getEndpointSelection());
+        this.sttEndpoints = new UpstreamEndpointSelector(
+                "stt", properties.getSttBaseUrl(), properties.getSttBaseUrls(), properties.getEndpointSelection());
     }
 
     public byte[] synthesize(String text, String voice, String lang, Double speed, AudioFormat format) {
@@ -62,32 +86,36 @@ public class SpeechKitClient {
                              AudioFormat format) {
         String requestId = currentRequestId();
         String outputAudioSpecType = outputAudioSpecType(format);
-        log.info("Calling TTS upstream request_id={} endpoint={} output_audio_spec_type={} format={}",
-                requestId, TTS_SYNTHESIS_PATH, outputAudioSpecType, format);
-
+        RequestDeadline.current().checkNotExpired();
+        SpeechKitAccount account = accountPool.acquire();
         ResponseEntity<String> responseEntity;
         try {
-            responseEntity = executeWithAuthRetry(true, () -> ttsRestClient.post()
-                    .uri(TTS_SYNTHESIS_PATH)
-                    .headers(this::setTtsHeaders)
+            account.rateLimiter().acquireTts(text == null ? 0 : text.length());
+            log.info("Calling TTS upstream request_id={} endpoint={} account={} output_audio_spec_type={} format={}",
+                    requestId, TTS_SYNTHESIS_PATH, account.id(), outputAudioSpecType, format);
+            responseEntity = executeWithAuthRetry(account, true, iamToken -> callEndpoint(ttsEndpoints, endpoint -> ttsRestClient.post()
+                    .uri(uriBuilder -> endpoint.apply(uriBuilder).path(TTS_SYNTHESIS_PATH).build())
+                    .headers(headers -> setTtsHeaders(headers, account, iamToken))
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(utteranceSynthesisBody(text, voice, speed, role, pitch, format))
                     .retrieve()
-                    .toEntity(String.class));
+                    .toEntity(String.class)));
         } catch (RestClientResponseException ex) {
-            throw mapUpstreamException(ex, "tts");
+            throw mapUpstreamException(ex, "tts", account);
         } catch (ResourceAccessException ex) {
-            if (ex.getCause() instanceof SocketTimeoutException) {
-                throw new ApiException(HttpStatus.GATEWAY_TIMEOUT, "Upstream timeout", "server_error", null, "upstream_timeout");
-            }
-            throw new ApiException(HttpStatus.BAD_GATEWAY, "Upstream connection error", "server_error", null, "upstream_error");
+            throw mapResourceAccessException(ex);
         } catch (RuntimeException ex) {
             if (ex instanceof ApiException apiException) {
                 throw apiException;
             }
+            if (RequestDeadline.current().isExpired()) {
+                throw RequestDeadline.exceeded();
+            }
             log.error("Unexpected runtime exception during TTS upstream call request_id={} endpoint={} exception_class={} message={}",
                     requestId, TTS_SYNTHESIS_PATH, ex.getClass().getName(), ex.getMessage(), ex);
             throw new ApiException(HttpStatus.BAD_GATEWAY, "Upstream service error", "server_error", "tts", "upstream_error");
+        } finally {
+            accountPool.release(account);
         }
 
         String contentType = responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
@@ -103,13 +131,21 @@ public class SpeechKitClient {
     }
 
     public String recognize(byte[] bytes, String filename, String language, String format, Integer sampleRateHertz) {
+        return recognize(AudioUpload.of(bytes), filename, language, format, sampleRateHertz);
+    }
+
+    public String recognize(AudioUpload audio, String filename, String language, String format, Integer sampleRateHertz) {
+        RequestDeadline.current().checkNotExpired();
+        SpeechKitAccount account = accountPool.acquire();
         try {
-            boolean iamAuth = useIamForStt();
-            Map<?, ?> response = executeWithAuthRetry(iamAuth, () -> sttRestClient.post()
+            long contentLength = audio.size();
+            account.rateLimiter().acquireStt(contentLength);
+            boolean iamAuth = useIamForStt(account);
+            Map<?, ?> response = executeWithAuthRetry(account, iamAuth, iamToken -> callEndpoint(sttEndpoints, endpoint -> sttRestClient.post()
                     .uri(uriBuilder -> {
-                        var builder = uriBuilder
+                        var builder = endpoint.apply(uriBuilder)
                                 .path("/speech/v1/stt:recognize")
-                                .queryParam("folderId", properties.getFolderId())
+                                .queryParam("folderId", account.folderId())
                                 .queryParam("lang", language);
                         if (format != null && !format.isBlank()) {
                             builder.queryParam("format", format);
@@ -119,24 +155,126 @@ public class SpeechKitClient {
                         }
                         return builder.build();
                     })
-                    .headers(this::setSttHeaders)
+                    .headers(headers -> setSttHeaders(headers, account, iamToken))
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(bytes)
+                    .contentLength(contentLength)
+                    .body(output -> {
+                        try (InputStream input = audio.openStream()) {
+                            input.transferTo(output);
+                        }
+                    })
                     .retrieve()
-                    .body(Map.class));
+                    .body(Map.class)));
             Object result = response == null ? null : response.get("result");
             return result == null ? "" : String.valueOf(result);
         } catch (RestClientResponseException ex) {
-            throw mapUpstreamException(ex, "transcription");
+            throw mapUpstreamException(ex, "transcription", account);
         } catch (ResourceAccessException ex) {
-            if (ex.getCause() instanceof SocketTimeoutException) {
-                throw new ApiException(HttpStatus.GATEWAY_TIMEOUT, "Upstream timeout", "server_error", null, "upstream_timeout");
+            throw mapResourceAccessException(ex);
+        } catch (RestClientException ex) {
+            if (RequestDeadline.current().isExpired()) {
+                throw RequestDeadline.exceeded();
+            }
+            throw ex;
+        } finally {
+            accountPool.release(account);
+        }
+    }
+
+    public void warmUpTokens() {
+        for (SpeechKitAccount account : accountPool.accounts()) {
+            try {
+                account.tokenProvider().getToken();
+                log.info("Warm-up fetched IAM token account={}", account.id());
+            } catch (RuntimeException ex) {
+                log.warn("Warm-up failed to fetch IAM token account={} error={}", account.id(), ex.getMessage());
             }
-            throw new ApiException(HttpStatus.BAD_GATEWAY, "Upstream connection error", "server_error", null, "upstream_error");
         }
     }
 
-    private ApiException mapUpstreamException(RestClientResponseException ex, String param) {
+    public int warmUpConnections(int connectionsPerEndpoint) {
+        if (connectionsPerEndpoint <= 0) {
+            return 0;
+        }
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (UpstreamEndpointSelector.Endpoint endpoint : ttsEndpoints.endpoints()) {
+                for (int i = 0; i < connectionsPerEndpoint; i++) {
+                    results.add(executor.submit(() -> openConnection(ttsRestClient, endpoint)));
+                }
+            }
+            for (UpstreamEndpointSelector.Endpoint endpoint : sttEndpoints.endpoints()) {
+                for (int i = 0; i < connectionsPerEndpoint; i++) {
+                    results.add(executor.submit(() -> openConnection(sttRestClient, endpoint)));
+                }
+            }
+        }
+        int opened = 0;
+        for (Future<Boolean> result : results) {
+            if (result.state() == Future.State.SUCCESS && result.resultNow()) {
+                opened++;
+            }
+        }
+        return opened;
+    }
+
+    public long warmUpCodecs(int iterations) {
+        byte[] audio = new byte[4096];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) i;
+        }
+        AudioFormat[] formats = AudioFormat.values();
+        long checksum = 0;
+        try {
+            String payload = OBJECT_MAPPER.writeValueAsString(Map.of(
+                    "result", Map.of("audioChunk", Map.of("data", Base64.getEncoder().encodeToString(audio)))
+            ));
+            for (int i = 0; i < iterations; i++) {
+                Map<String, Object> body = utteranceSynthesisBody(
+                        "warm-up", properties.getDefaultVoice(), 1.0, null, null, formats[i % formats.length]);
+                checksum += OBJECT_MAPPER.writeValueAsBytes(body).length;
+                PayloadStats stats = PayloadStats.from(OBJECT_MAPPER.readValue(payload, Map.class));
+                if (stats.rootMap() instanceof Map<?, ?> root && root.get("audioChunk") instanceof Map<?, ?> chunk) {
+                    checksum += decodeBase64Audio(String.valueOf(chunk.get("data"))).length;
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to run codec warm-up", ex);
+        }
+        return checksum;
+    }
+
+    private boolean openConnection(RestClient restClient, UpstreamEndpointSelector.Endpoint endpoint) {
+        try {
+            restClient.get()
+                    .uri(uriBuilder -> endpoint.apply(uriBuilder).path("/").build())
+                    .exchange((request, response) -> {
+                        try (InputStream body = response.getBody()) {
+                            body.transferTo(OutputStream.nullOutputStream());
+                        }
+                        return response.getStatusCode();
+                    });
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Warm-up failed to open upstream connection endpoint={} error={}", endpoint.label(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private ApiException mapResourceAccessException(ResourceAccessException ex) {
+        if (RequestDeadline.current().isExpired()) {
+            return RequestDeadline.exceeded();
+        }
+        if (ex.getCause() instanceof SocketTimeoutException) {
+            return new ApiException(HttpStatus.GATEWAY_TIMEOUT, "Upstream timeout", "server_error", null, "upstream_timeout");
+        }
+        return new ApiException(HttpStatus.BAD_GATEWAY, "Upstream connection error", "server_error", null, "upstream_error");
+    }
+
+    private ApiException mapUpstreamException(RestClientResponseException ex, String param, SpeechKitAccount account) {
+        if (isQuotaError(ex)) {
+            accountPool.markThrottled(account);
+        }
         HttpStatus status = HttpStatus.resolve(ex.getStatusCode().value());
         if (status == null) {
             return new ApiException(HttpStatus.BAD_GATEWAY, "Unexpected upstream status", "server_error", param, "upstream_error");
@@ -226,15 +364,8 @@ public class SpeechKitClient {
             throw new ApiException(HttpStatus.BAD_GATEWAY, "Upstream returned empty audio payload", "server_error", "tts", "upstream_error");
         }
 
-        String rawData = String.valueOf(data);
-        String sanitized = rawData.replaceAll("\\s+", "");
-        String normalized = sanitized.replace('-', '+').replace('_', '/');
-        int remainder = normalized.length() % 4;
-        if (remainder != 0) {
-            normalized = normalized + "=".repeat(4 - remainder);
-        }
         try {
-            return Base64.getDecoder().decode(normalized);
+            return decodeBase64Audio(String.valueOf(data));
         } catch (IllegalArgumentException ex) {
             log.warn("Failed to decode TTS audio payload request_id={} endpoint={} content_type={} error={}",
                     requestId, TTS_SYNTHESIS_PATH, contentType, ex.getMessage());
@@ -246,6 +377,16 @@ public class SpeechKitClient {
         }
     }
 
+    private static byte[] decodeBase64Audio(String rawData) {
+        String sanitized = rawData.replaceAll("\\s+", "");
+        String normalized = sanitized.replace('-', '+').replace('_', '/');
+        int remainder = normalized.length() % 4;
+        if (remainder != 0) {
+            normalized = normalized + "=".repeat(4 - remainder);
+        }
+        return Base64.getDecoder().decode(normalized);
+    }
+
     private Map<?, ?> parseJsonObject(String rawBody, String requestId, String contentType) {
         if (rawBody == null || rawBody.isBlank()) {
             return null;
@@ -384,45 +525,42 @@ public class SpeechKitClient {
         return start + "..." + end;
     }
 
-    private void setSttHeaders(HttpHeaders headers) {
-        if (useApiKeyForStt()) {
-            headers.set(HttpHeaders.AUTHORIZATION, "Api-Key " + properties.getApiKey());
+    private void setSttHeaders(HttpHeaders headers, SpeechKitAccount account, String iamToken) {
+        if (useApiKeyForStt(account)) {
+            headers.set(HttpHeaders.AUTHORIZATION, "Api-Key " + account.apiKey());
             return;
         }
-        setIamAuthHeader(headers);
+        headers.setBearerAuth(iamToken);
     }
 
-    private void setIamAuthHeader(HttpHeaders headers) {
-        headers.setBearerAuth(tokenProvider.getToken());
-    }
-
-    private boolean useApiKeyForStt() {
+    private boolean useApiKeyForStt(SpeechKitAccount account) {
         if (properties.getAuthMode() == SpeechKitProperties.AuthMode.API_KEY) {
-            String apiKey = properties.getApiKey();
+            String apiKey = account.apiKey();
             return apiKey != null && !apiKey.isBlank();
         }
         return false;
     }
 
-    private boolean useIamForStt() {
-        return !useApiKeyForStt();
+    private boolean useIamForStt(SpeechKitAccount account) {
+        return !useApiKeyForStt(account);
     }
 
-    private void setTtsHeaders(HttpHeaders headers) {
-        setIamAuthHeader(headers);
-        headers.set("x-folder-id", properties.getFolderId());
+    private void setTtsHeaders(HttpHeaders headers, SpeechKitAccount account, String iamToken) {
+        headers.setBearerAuth(iamToken);
+        headers.set("x-folder-id", account.folderId());
     }
 
-    private <T> T executeWithAuthRetry(boolean iamAuth, UpstreamCall<T> call) {
+    private <T> T executeWithAuthRetry(SpeechKitAccount account, boolean iamAuth, UpstreamCall<T> call) {
         int retries = Math.max(0, properties.getMaxRetryOnAuthError());
         int attempt = 0;
 
         while (true) {
+            String iamToken = iamAuth ? account.tokenProvider().getToken() : null;
             try {
-                return call.call();
+                return call.call(iamToken);
             } catch (RestClientResponseException ex) {
                 if (iamAuth && isAuthFailure(ex) && attempt < retries) {
-                    tokenProvider.forceRefresh();
+                    account.tokenProvider().forceRefresh(iamToken);
                     attempt++;
                     continue;
                 }
@@ -431,13 +569,53 @@ public class SpeechKitClient {
         }
     }
 
+    private boolean isQuotaError(RestClientResponseException ex) {
+        int status = ex.getStatusCode().value();
+        if (status == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            return true;
+        }
+        if (status == HttpStatus.UNAUTHORIZED.value() || !ex.getStatusCode().is4xxClientError()) {
+            return false;
+        }
+        String body = ex.getResponseBodyAsString();
+        return body != null && body.toLowerCase(Locale.ROOT).contains("quota");
+    }
+
     private boolean isAuthFailure(RestClientResponseException ex) {
         int status = ex.getStatusCode().value();
         return status == HttpStatus.UNAUTHORIZED.value() || status == HttpStatus.FORBIDDEN.value();
     }
 
+    private <T> T callEndpoint(UpstreamEndpointSelector selector,
+                               Function<UpstreamEndpointSelector.Endpoint, T> call) {
+        UpstreamEndpointSelector.Endpoint endpoint = selector.select();
+        long started = System.nanoTime();
+        try {
+            T result = call.apply(endpoint);
+            selector.recordSuccess(endpoint, System.nanoTime() - started);
+            return result;
+        } catch (RuntimeException ex) {
+            if (isEndpointFailure(ex)) {
+                selector.recordFailure(endpoint, System.nanoTime() - started);
+            }
+            throw ex;
+        } finally {
+            selector.release(endpoint);
+        }
+    }
+
+    private boolean isEndpointFailure(RuntimeException ex) {
+        if (RequestDeadline.current().isExpired()) {
+            return false;
+        }
+        if (ex instanceof RestClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return ex instanceof ResourceAccessException;
+    }
+
     @FunctionalInterface
     private interface UpstreamCall<T> {
-        T call();
+        T call(String iamToken);
     }
 }
@@ -0,0 +1,209 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+public class SpeechKitStreamingRecognizer implements StreamingRecognizer {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeechKitStreamingRecognizer.class);
+    private static final String STREAM_FILENAME = "stream.pcm";
+
+    private final SpeechKitClient speechKitClient;
+    private final SpeechKitProperties properties;
+
+    public SpeechKitStreamingRecognizer(SpeechKitClient speechKitClient, SpeechKitProperties properties) {
+        this.speechKitClient = speechKitClient;
+        this.properties = properties;
+    }
+
+    @Override
+    public Session start(String language, int sampleRateHertz, Listener listener) {
+        return new UtteranceSession(language, sampleRateHertz, listener);
+    }
+
+    private static int frames(Duration duration, int frameBytes, int sampleRateHertz) {
+        long bytes = duration == null ? 0 : duration.toMillis() * sampleRateHertz / 1000 * 2;
+        return (int) ((bytes + frameBytes - 1) / frameBytes);
+    }
+
+    private final class UtteranceSession implements Session {
+
+        private final String language;
+        private final int sampleRateHertz;
+        private final Listener listener;
+        private final VoiceActivityDetector.FrameClassifier classifier;
+        private final byte[] frame;
+        private final int endOfUtteranceFrames;
+        private final int preRollFrames;
+        private final long partialBytes;
+        private final long maxUtteranceBytes;
+        private final ArrayDeque<byte[]> preRoll = new ArrayDeque<>();
+        private final ByteArrayOutputStream utterance = new ByteArrayOutputStream();
+        private final AtomicBoolean partialPending = new AtomicBoolean();
+        private final ExecutorService recognitions;
+        private final Map<String, String> mdc;
+        private int filled;
+        private boolean inSpeech;
+        private int silentFrames;
+        private long lastPartialBytes;
+        private int utteranceIndex;
+
+        private UtteranceSession(String language, int sampleRateHertz, Listener listener) {
+            SpeechKitProperties.AsrStreamingProperties streaming = properties.getAsrStreaming();
+            this.language = language;
+            this.sampleRateHertz = sampleRateHertz;
+            this.listener = listener;
+            this.classifier = VoiceActivityDetector.classifier(properties.getAsrVad(), sampleRateHertz, 1);
+            this.frame = new byte[classifier.frameBytes()];
+            this.endOfUtteranceFrames = Math.max(1, frames(streaming.getEndOfUtterance(), frame.length, sampleRateHertz));
+            this.preRollFrames = frames(streaming.getPreRoll(), frame.length, sampleRateHertz);
+            this.partialBytes = (long) frames(streaming.getPartialInterval(), frame.length, sampleRateHertz) * frame.length;
+            this.maxUtteranceBytes = Math.max(frame.length,
+                    (long) frames(streaming.getMaxUtterance(), frame.length, sampleRateHertz) * frame.length);
+            this.recognitions = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("asr-stream-", 0).factory());
+            this.mdc = MDC.getCopyOfContextMap();
+        }
+
+        @Override
+        public void accept(byte[] pcm, int offset, int length) {
+            int position = offset;
+            int end = offset + length;
+            while (position < end) {
+                int copied = Math.min(end - position, frame.length - filled);
+                System.arraycopy(pcm, position, frame, filled, copied);
+                filled += copied;
+                position += copied;
+                if (filled == frame.length) {
+                    processFrame();
+                    filled = 0;
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (inSpeech) {
+                utterance.write(frame, 0, filled - filled % 2);
+                endUtterance();
+            }
+            filled = 0;
+            submit(listener::onComplete);
+            recognitions.shutdown();
+        }
+
+        @Override
+        public void close() {
+            recognitions.shutdownNow();
+        }
+
+        private void processFrame() {
+            boolean speech = classifier.isSpeech(frame, frame.length);
+            if (!inSpeech) {
+                if (!speech) {
+                    if (preRollFrames > 0) {
+                        if (preRoll.size() == preRollFrames) {
+                            preRoll.removeFirst();
+                        }
+                        preRoll.addLast(frame.clone());
+                    }
+                    return;
+                }
+                inSpeech = true;
+                silentFrames = 0;
+                lastPartialBytes = 0;
+                utterance.reset();
+                for (byte[] previous : preRoll) {
+                    utterance.writeBytes(previous);
+                }
+                preRoll.clear();
+            }
+            utterance.write(frame, 0, frame.length);
+            silentFrames = speech ? 0 : silentFrames + 1;
+            if (silentFrames >= endOfUtteranceFrames || utterance.size() >= maxUtteranceBytes) {
+                endUtterance();
+                return;
+            }
+            if (partialBytes > 0
+                    && utterance.size() - lastPartialBytes >= partialBytes
+                    && partialPending.compareAndSet(false, true)) {
+                lastPartialBytes = utterance.size();
+                byte[] audio = utterance.toByteArray();
+                int index = utteranceIndex;
+                submit(() -> {
+                    try {
+                        String text = recognize(audio);
+                        if (text != null) {
+                            listener.onPartial(index, text);
+                        }
+                    } finally {
+                        partialPending.set(false);
+                    }
+                });
+            }
+        }
+
+        private void endUtterance() {
+            byte[] audio = utterance.toByteArray();
+            int index = utteranceIndex++;
+            inSpeech = false;
+            silentFrames = 0;
+            utterance.reset();
+            submit(() -> {
+                String text = recognize(audio);
+                if (text != null) {
+                    listener.onFinal(index, text);
+                }
+            });
+        }
+
+        private String recognize(byte[] audio) {
+            try {
+                return speechKitClient.recognize(audio, STREAM_FILENAME, language, "lpcm", sampleRateHertz);
+            } catch (ApiException ex) {
+                listener.onError(ex);
+            } catch (RuntimeException ex) {
+                log.warn("Streaming recognition failed: {}", ex.toString());
+                listener.onError(new ApiException(
+                        HttpStatus.BAD_GATEWAY,
+                        "Upstream error while transcribing",
+                        "server_error",
+                        null,
+                        "upstream_error"
+                ));
+            }
+            return null;
+        }
+
+        private void submit(Runnable task) {
+            try {
+                recognitions.execute(() -> {
+                    if (mdc != null) {
+                        MDC.setContextMap(mdc);
+                    }
+                    try {
+                        task.run();
+                    } finally {
+                        MDC.clear();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                log.debug("Dropping streaming recognition task after session close");
+            }
+        }
+    }
+}
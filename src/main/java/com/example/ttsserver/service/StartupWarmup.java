@@ -0,0 +1,61 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final SpeechKitClient speechKitClient;
+    private final SpeechKitProperties.WarmupProperties warmup;
+
+    public StartupWarmup(SpeechKitClient speechKitClient, SpeechKitProperties properties) {
+        this.speechKitClient = speechKitClient;
+        this.warmup = properties.getWarmup();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!warmup.isEnabled()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("startup-warmup").daemon().factory()
+        );
+        try {
+            Future<?> task = executor.submit(this::warmUp);
+            task.get(warmup.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Startup warm-up completed duration_ms={}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (TimeoutException ex) {
+            log.warn("Startup warm-up timed out, continuing startup timeout_ms={}", warmup.getTimeout().toMillis());
+        } catch (ExecutionException ex) {
+            log.warn("Startup warm-up failed, continuing startup error={}", ex.getCause().getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void warmUp() {
+        speechKitClient.warmUpTokens();
+        int opened = speechKitClient.warmUpConnections(warmup.getConnectionsPerEndpoint());
+        log.info("Warm-up opened upstream connections count={}", opened);
+        speechKitClient.warmUpCodecs(warmup.getCodecIterations());
+    }
+}
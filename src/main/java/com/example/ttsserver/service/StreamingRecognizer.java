@@ -0,0 +1,29 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.error.ApiException;
+
+public interface StreamingRecognizer {
+
+    Session start(String language, int sampleRateHertz, Listener listener);
+
+    interface Session extends AutoCloseable {
+
+        void accept(byte[] pcm, int offset, int length);
+
+        void finish();
+
+        @Override
+        void close();
+    }
+
+    interface Listener {
+
+        void onPartial(int utterance, String text);
+
+        void onFinal(int utterance, String text);
+
+        void onError(ApiException error);
+
+        void onComplete();
+    }
+}
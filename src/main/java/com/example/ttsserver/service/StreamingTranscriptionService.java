@@ -0,0 +1,98 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class StreamingTranscriptionService {
+
+    private final StreamingRecognizer streamingRecognizer;
+    private final SpeechKitProperties properties;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    public StreamingTranscriptionService(StreamingRecognizer streamingRecognizer, SpeechKitProperties properties) {
+        this(streamingRecognizer, properties, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public StreamingTranscriptionService(StreamingRecognizer streamingRecognizer,
+                                         SpeechKitProperties properties,
+                                         MeterRegistry meterRegistry) {
+        this.streamingRecognizer = streamingRecognizer;
+        this.properties = properties;
+        Gauge.builder("asr.streaming.sessions", activeSessions, AtomicInteger::get)
+                .description("Open streaming transcription sessions")
+                .register(meterRegistry);
+    }
+
+    public StreamingRecognizer.Session open(String encoding,
+                                            int sampleRateHertz,
+                                            int channels,
+                                            String language,
+                                            StreamingRecognizer.Listener listener) {
+        WavDecoder.Header input = inputFormat(encoding, sampleRateHertz, channels);
+        String lang = (language == null || language.isBlank()) ? properties.getDefaultLanguage() : language;
+        int targetSampleRateHertz = properties.getAsrNormalize().getTargetSampleRateHertz();
+        WavDecoder.StreamConverter converter = input.isPcm16() && channels == 1 && sampleRateHertz == targetSampleRateHertz
+                ? null
+                : WavDecoder.streamConverter(input, 1, targetSampleRateHertz);
+        StreamingRecognizer.Session session = streamingRecognizer.start(lang, targetSampleRateHertz, listener);
+        activeSessions.incrementAndGet();
+        return new StreamingRecognizer.Session() {
+            private boolean closed;
+
+            @Override
+            public void accept(byte[] audio, int offset, int length) {
+                if (converter == null) {
+                    session.accept(audio, offset, length);
+                    return;
+                }
+                byte[] pcm = converter.convert(audio, offset, length);
+                session.accept(pcm, 0, pcm.length);
+            }
+
+            @Override
+            public void finish() {
+                session.finish();
+            }
+
+            @Override
+            public synchronized void close() {
+                if (!closed) {
+                    closed = true;
+                    activeSessions.decrementAndGet();
+                    session.close();
+                }
+            }
+        };
+    }
+
+    private WavDecoder.Header inputFormat(String encoding, int sampleRateHertz, int channels) {
+        if (sampleRateHertz < 8000 || sampleRateHertz > 192000) {
+            throw invalid("sample_rate must be between 8000 and 192000", "sample_rate");
+        }
+        if (channels < 1 || channels > 8) {
+            throw invalid("channels must be between 1 and 8", "channels");
+        }
+        String value = encoding == null ? "pcm16" : encoding.trim().toLowerCase(Locale.ROOT);
+        return switch (value) {
+            case "pcm16" -> new WavDecoder.Header(WavDecoder.FORMAT_PCM, channels, sampleRateHertz, 16, channels * 2, 0, 0);
+            case "g711_ulaw" -> new WavDecoder.Header(WavDecoder.FORMAT_MULAW, channels, sampleRateHertz, 8, channels, 0, 0);
+            case "g711_alaw" -> new WavDecoder.Header(WavDecoder.FORMAT_ALAW, channels, sampleRateHertz, 8, channels, 0, 0);
+            default -> throw invalid("encoding must be pcm16, g711_ulaw or g711_alaw", "encoding");
+        };
+    }
+
+    private static ApiException invalid(String message, String param) {
+        return new ApiException(HttpStatus.BAD_REQUEST, message, "invalid_request_error", param, "validation_error");
+    }
+}
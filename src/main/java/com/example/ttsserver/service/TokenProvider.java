@@ -5,4 +5,8 @@ public interface TokenProvider {
     String getToken();
 
     void forceRefresh();
+
+    default void forceRefresh(String rejectedToken) {
+        forceRefresh();
+    }
 }
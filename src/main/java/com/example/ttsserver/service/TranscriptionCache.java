@@ -0,0 +1,167 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+final class TranscriptionCache {
+
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    TranscriptionCache(int maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlNanos = ttl == null || ttl.isNegative() ? 0 : ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TranscriptionCache.this.maxEntries;
+            }
+        };
+
+        Gauge.builder("asr.cache.size", this, TranscriptionCache::size)
+                .description("Transcriptions held in the ASR result cache")
+                .register(meterRegistry);
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.coalesced = requests(meterRegistry, "coalesced");
+    }
+
+    String get(String key, Loader loader) throws IOException {
+        while (true) {
+            String cached = lookup(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            CompletableFuture<String> pending = new CompletableFuture<>();
+            CompletableFuture<String> leader = inFlight.putIfAbsent(key, pending);
+            if (leader == null) {
+                misses.increment();
+                return load(key, loader, pending);
+            }
+            coalesced.increment();
+            String shared = await(leader);
+            if (shared != null) {
+                return shared;
+            }
+        }
+    }
+
+    static String sha256(AudioUpload upload) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_BYTES];
+        try (InputStream input = upload.openStream()) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private String load(String key, Loader loader, CompletableFuture<String> pending) throws IOException {
+        try {
+            String text = loader.load();
+            store(key, text);
+            pending.complete(text);
+            return text;
+        } catch (IOException | RuntimeException ex) {
+            pending.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    private String await(CompletableFuture<String> leader) throws IOException {
+        RequestDeadline deadline = RequestDeadline.current();
+        try {
+            return deadline.isBounded()
+                    ? leader.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS)
+                    : leader.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw RequestDeadline.exceeded();
+        } catch (TimeoutException ex) {
+            throw RequestDeadline.exceeded();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ApiException api && "deadline_exceeded".equals(api.getCode())) {
+                return null;
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private synchronized String lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.storedAtNanos() > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.text();
+    }
+
+    private synchronized void store(String key, String text) {
+        if (maxEntries > 0) {
+            entries.put(key, new Entry(text, System.nanoTime()));
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("asr.cache.requests")
+                .description("ASR transcriptions served from cache, computed, or shared with an identical in-flight request")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    interface Loader {
+
+        String load() throws IOException;
+    }
+
+    private record Entry(String text, long storedAtNanos) {
+    }
+}
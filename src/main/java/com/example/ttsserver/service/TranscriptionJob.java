@@ -0,0 +1,44 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.error.ApiException;
+
+import java.net.URI;
+import java.time.Instant;
+
+public record TranscriptionJob(
+        String id,
+        Status status,
+        Instant createdAt,
+        Instant completedAt,
+        String text,
+        ApiException error,
+        URI callbackUrl
+) {
+
+    static TranscriptionJob queued(String id, URI callbackUrl) {
+        return new TranscriptionJob(id, Status.QUEUED, Instant.now(), null, null, null, callbackUrl);
+    }
+
+    TranscriptionJob running() {
+        return new TranscriptionJob(id, Status.RUNNING, createdAt, null, null, null, callbackUrl);
+    }
+
+    TranscriptionJob succeeded(String text) {
+        return new TranscriptionJob(id, Status.SUCCEEDED, createdAt, Instant.now(), text, null, callbackUrl);
+    }
+
+    TranscriptionJob failed(ApiException error) {
+        return new TranscriptionJob(id, Status.FAILED, createdAt, Instant.now(), null, error, callbackUrl);
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+}
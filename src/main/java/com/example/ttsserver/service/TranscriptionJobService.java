@@ -0,0 +1,371 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.api.asr.TranscriptionJobResponse;
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+@Service
+public class TranscriptionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionJobService.class);
+    private static final Duration MIN_SWEEP_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration MAX_SWEEP_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration CALLBACK_INITIAL_BACKOFF = Duration.ofSeconds(1);
+
+    private final AsrService asrService;
+    private final SpeechKitProperties.AsrJobsProperties properties;
+    private final RestClient callbackRestClient;
+    private final Map<String, TranscriptionJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retentionScheduler;
+    private final Map<TranscriptionJob.Status, Counter> completed = new EnumMap<>(TranscriptionJob.Status.class);
+    private final Counter rejected;
+    private final Predicate<InetAddress> callbackAddressAllowed;
+
+    public TranscriptionJobService(AsrService asrService, SpeechKitProperties properties, RestClient callbackRestClient) {
+        this(asrService, properties, callbackRestClient, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public TranscriptionJobService(AsrService asrService,
+                                   SpeechKitProperties properties,
+                                   RestClient callbackRestClient,
+                                   MeterRegistry meterRegistry) {
+        this(asrService, properties, callbackRestClient, meterRegistry, TranscriptionJobService::isPublicAddress);
+    }
+
+    TranscriptionJobService(AsrService asrService,
+                            SpeechKitProperties properties,
+                            RestClient callbackRestClient,
+                            MeterRegistry meterRegistry,
+                            Predicate<InetAddress> callbackAddressAllowed) {
+        this.asrService = asrService;
+        this.properties = properties.getAsrJobs();
+        this.callbackRestClient = callbackRestClient;
+        this.callbackAddressAllowed = callbackAddressAllowed;
+        int workerCount = Math.max(1, this.properties.getWorkers());
+        BlockingQueue<Runnable> queue = this.properties.getMaxQueued() > 0
+                ? new ArrayBlockingQueue<>(this.properties.getMaxQueued())
+                : new SynchronousQueue<>();
+        this.workers = new ThreadPoolExecutor(
+                workerCount,
+                workerCount,
+                0L,
+                TimeUnit.MILLISECONDS,
+                queue,
+                Thread.ofVirtual().name("asr-job-", 0).factory()
+        );
+        this.retentionScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("asr-job-retention").daemon().factory()
+        );
+        long sweepMillis = sweepInterval(this.properties.getRetention()).toMillis();
+        retentionScheduler.scheduleWithFixedDelay(this::removeExpired, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("asr.jobs.queue.depth", workers, executor -> executor.getQueue().size())
+                .description("Transcription jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("asr.jobs.running", workers, ThreadPoolExecutor::getActiveCount)
+                .description("Transcription jobs currently running")
+                .register(meterRegistry);
+        for (TranscriptionJob.Status status : new TranscriptionJob.Status[]{TranscriptionJob.Status.SUCCEEDED, TranscriptionJob.Status.FAILED}) {
+            completed.put(status, Counter.builder("asr.jobs.completed")
+                    .description("Finished transcription jobs")
+                    .tag("status", status.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.rejected = Counter.builder("asr.jobs.rejected")
+                .description("Transcription jobs rejected because the job queue was full")
+                .register(meterRegistry);
+    }
+
+    public TranscriptionJob submit(MultipartFile file, String language, URI callbackUrl) {
+        if (file.isEmpty()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "file must not be empty", "invalid_request_error", "file", "validation_error");
+        }
+        if (callbackUrl != null) {
+            checkCallbackUrl(callbackUrl);
+        }
+        String id = "job_" + UUID.randomUUID().toString().replace("-", "");
+        Path spool = spool(id, file);
+        TranscriptionJob job = TranscriptionJob.queued(id, callbackUrl);
+        jobs.put(id, job);
+        try {
+            workers.execute(new JobTask(id, spool, file.getOriginalFilename(), file.getContentType(), language, MDC.getCopyOfContextMap()));
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(id);
+            deleteQuietly(spool);
+            rejected.increment();
+            throw new ApiException(
+                    HttpStatus.TOO_MANY_REQUESTS,
+                    "Too many transcription jobs queued",
+                    "rate_limit_error",
+                    "file",
+                    "rate_limit_exceeded"
+            );
+        }
+        log.info("Transcription job queued id={} bytes={}", id, file.getSize());
+        return job;
+    }
+
+    public Optional<TranscriptionJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    void removeExpired() {
+        Instant cutoff = Instant.now().minus(properties.getRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.completedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        retentionScheduler.shutdownNow();
+        for (Runnable pending : workers.shutdownNow()) {
+            if (pending instanceof JobTask task) {
+                deleteQuietly(task.spool);
+            }
+        }
+    }
+
+    private Path spool(String id, MultipartFile file) {
+        try {
+            Path dir = resolveSpoolDir(properties.getSpoolDir());
+            Path spool = dir.resolve("asr-" + id + ".upload");
+            file.transferTo(spool.toFile());
+            return spool;
+        } catch (IOException ex) {
+            log.warn("Unable to spool transcription job upload: {}", ex.getMessage());
+            throw new ApiException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Unable to store uploaded file",
+                    "server_error",
+                    "file",
+                    "spool_failed"
+            );
+        }
+    }
+
+    private void run(JobTask task) {
+        jobs.computeIfPresent(task.id, (id, job) -> job.running());
+        TranscriptionJob finished;
+        try (RequestDeadline.Scope ignored = jobDeadline().attach()) {
+            String text = asrService.transcribe(AudioUpload.of(task.spool), task.filename, task.contentType, task.language);
+            finished = complete(task.id, job -> job.succeeded(text));
+        } catch (ApiException ex) {
+            finished = complete(task.id, job -> job.failed(ex));
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Transcription job id={} failed: {}", task.id, ex.toString());
+            ApiException error = new ApiException(
+                    HttpStatus.BAD_GATEWAY,
+                    "Upstream error while transcribing",
+                    "server_error",
+                    null,
+                    "upstream_error"
+            );
+            finished = complete(task.id, job -> job.failed(error));
+        } finally {
+            deleteQuietly(task.spool);
+        }
+        if (finished != null && finished.callbackUrl() != null) {
+            Map<String, String> mdc = MDC.getCopyOfContextMap();
+            TranscriptionJob payload = finished;
+            Thread.ofVirtual().name("asr-job-callback").start(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                notifyCallback(payload);
+            });
+        }
+    }
+
+    private TranscriptionJob complete(String id, UnaryOperator<TranscriptionJob> transition) {
+        TranscriptionJob finished = jobs.computeIfPresent(id, (key, job) -> transition.apply(job));
+        if (finished != null) {
+            completed.get(finished.status()).increment();
+            log.info("Transcription job finished id={} status={}", id, finished.status());
+        }
+        return finished;
+    }
+
+    private void notifyCallback(TranscriptionJob job) {
+        TranscriptionJobResponse payload = TranscriptionJobResponse.from(job);
+        long backoffMillis = CALLBACK_INITIAL_BACKOFF.toMillis();
+        for (int attempt = 1; attempt <= properties.getCallbackMaxAttempts(); attempt++) {
+            try {
+                checkCallbackUrl(job.callbackUrl());
+            } catch (ApiException ex) {
+                log.warn("Transcription job callback skipped id={}: {}", job.id(), ex.getMessage());
+                return;
+            }
+            try {
+                callbackRestClient.post()
+                        .uri(job.callbackUrl())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(payload)
+                        .retrieve()
+                        .toBodilessEntity();
+                return;
+            } catch (RestClientException ex) {
+                log.warn("Transcription job callback failed id={} attempt={}: {}", job.id(), attempt, ex.getMessage());
+            }
+            if (attempt < properties.getCallbackMaxAttempts()) {
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMillis *= 2;
+            }
+        }
+    }
+
+    private void checkCallbackUrl(URI callbackUrl) {
+        String host = callbackUrl.getHost().toLowerCase(Locale.ROOT);
+        List<String> allowedHosts = properties.getCallbackAllowedHosts();
+        if (allowedHosts.isEmpty()) {
+            throw callbackRejected("callback_url is disabled on this server");
+        }
+        if (allowedHosts.stream().noneMatch(allowed -> matchesHost(host, allowed))) {
+            throw callbackRejected("callback_url host is not allowed: " + host);
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException ex) {
+            throw callbackRejected("callback_url host cannot be resolved: " + host);
+        }
+        for (InetAddress address : addresses) {
+            if (!callbackAddressAllowed.test(address)) {
+                throw callbackRejected("callback_url must not point to a loopback, link-local or private address");
+            }
+        }
+    }
+
+    private static boolean matchesHost(String host, String allowed) {
+        String entry = allowed.trim().toLowerCase(Locale.ROOT);
+        if (entry.startsWith(".")) {
+            return host.endsWith(entry);
+        }
+        return !entry.isEmpty() && host.equals(entry);
+    }
+
+    static boolean isPublicAddress(InetAddress address) {
+        boolean uniqueLocal = address instanceof Inet6Address && (address.getAddress()[0] & 0xFE) == 0xFC;
+        return !address.isAnyLocalAddress()
+                && !address.isLoopbackAddress()
+                && !address.isLinkLocalAddress()
+                && !address.isSiteLocalAddress()
+                && !address.isMulticastAddress()
+                && !uniqueLocal;
+    }
+
+    private ApiException callbackRejected(String message) {
+        return new ApiException(HttpStatus.BAD_REQUEST, message, "invalid_request_error", "callback_url", "validation_error");
+    }
+
+    private RequestDeadline jobDeadline() {
+        Duration timeout = properties.getTimeout();
+        return timeout == null || timeout.isZero() || timeout.isNegative()
+                ? RequestDeadline.unbounded()
+                : RequestDeadline.after(timeout);
+    }
+
+    private static Duration sweepInterval(Duration retention) {
+        if (retention == null || retention.compareTo(MIN_SWEEP_INTERVAL) < 0) {
+            return MIN_SWEEP_INTERVAL;
+        }
+        return retention.compareTo(MAX_SWEEP_INTERVAL) > 0 ? MAX_SWEEP_INTERVAL : retention;
+    }
+
+    private Path resolveSpoolDir(String configuredSpoolDir) throws IOException {
+        if (configuredSpoolDir == null || configuredSpoolDir.isBlank()) {
+            return Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+        Path dir = Paths.get(configuredSpoolDir);
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.debug("Unable to delete spooled job upload {}", path, ex);
+        }
+    }
+
+    private final class JobTask implements Runnable {
+
+        private final String id;
+        private final Path spool;
+        private final String filename;
+        private final String contentType;
+        private final String language;
+        private final Map<String, String> mdc;
+
+        private JobTask(String id, Path spool, String filename, String contentType, String language, Map<String, String> mdc) {
+            this.id = id;
+            this.spool = spool;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.language = language;
+            this.mdc = mdc;
+        }
+
+        @Override
+        public void run() {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            MDC.put("job_id", id);
+            try {
+                TranscriptionJobService.this.run(this);
+            } finally {
+                MDC.clear();
+            }
+        }
+    }
+}
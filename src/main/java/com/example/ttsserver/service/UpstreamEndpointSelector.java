@@ -0,0 +1,220 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.util.UriBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+final class UpstreamEndpointSelector {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamEndpointSelector.class);
+
+    private final String upstream;
+    private final List<Endpoint> endpoints;
+    private final double decayNanos;
+    private final long failurePenaltyNanos;
+    private final int ejectAfterFailures;
+    private final long ejectionNanos;
+    private final LongSupplier nanoClock;
+
+    UpstreamEndpointSelector(String upstream,
+                             String defaultBaseUrl,
+                             List<String> baseUrls,
+                             SpeechKitProperties.EndpointSelectionProperties properties) {
+        this(upstream, defaultBaseUrl, baseUrls, properties, System::nanoTime);
+    }
+
+    UpstreamEndpointSelector(String upstream,
+                             String defaultBaseUrl,
+                             List<String> baseUrls,
+                             SpeechKitProperties.EndpointSelectionProperties properties,
+                             LongSupplier nanoClock) {
+        this.upstream = upstream;
+        this.endpoints = createEndpoints(defaultBaseUrl, baseUrls);
+        this.decayNanos = Math.max(1, positiveNanos(properties.getDecayTime()));
+        this.failurePenaltyNanos = positiveNanos(properties.getFailurePenalty());
+        this.ejectAfterFailures = Math.max(1, properties.getEjectAfterFailures());
+        this.ejectionNanos = positiveNanos(properties.getEjectionDuration());
+        this.nanoClock = nanoClock;
+    }
+
+    List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    Endpoint select() {
+        Endpoint selected = endpoints.size() == 1 ? endpoints.get(0) : choose(nanoClock.getAsLong());
+        selected.pending.incrementAndGet();
+        return selected;
+    }
+
+    void recordSuccess(Endpoint endpoint, long latencyNanos) {
+        if (endpoints.size() == 1) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        boolean recovered;
+        synchronized (endpoint) {
+            endpoint.observe(latencyNanos, now, decayNanos);
+            recovered = endpoint.ejectedUntilNanos != 0;
+            endpoint.consecutiveFailures = 0;
+            endpoint.ejectedUntilNanos = 0;
+            endpoint.probing = false;
+        }
+        if (recovered) {
+            log.info("Upstream endpoint restored upstream={} endpoint={}", upstream, endpoint.label);
+        }
+    }
+
+    void recordFailure(Endpoint endpoint, long latencyNanos) {
+        if (endpoints.size() == 1) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        boolean ejected = false;
+        synchronized (endpoint) {
+            endpoint.observe(Math.max(latencyNanos, failurePenaltyNanos), now, decayNanos);
+            endpoint.consecutiveFailures++;
+            if (endpoint.probing || endpoint.consecutiveFailures >= ejectAfterFailures) {
+                endpoint.ejectedUntilNanos = now + Math.max(1, ejectionNanos);
+                ejected = true;
+            }
+            endpoint.probing = false;
+        }
+        if (ejected) {
+            log.warn("Upstream endpoint ejected upstream={} endpoint={} consecutive_failures={} ejection_ms={}",
+                    upstream, endpoint.label, endpoint.consecutiveFailures, Duration.ofNanos(ejectionNanos).toMillis());
+        }
+    }
+
+    void release(Endpoint endpoint) {
+        endpoint.pending.decrementAndGet();
+        synchronized (endpoint) {
+            endpoint.probing = false;
+        }
+    }
+
+    private Endpoint choose(long now) {
+        List<Endpoint> available = new ArrayList<>(endpoints.size());
+        Endpoint soonestAvailable = null;
+        for (Endpoint endpoint : endpoints) {
+            synchronized (endpoint) {
+                if (endpoint.ejectedUntilNanos == 0) {
+                    available.add(endpoint);
+                } else if (endpoint.ejectedUntilNanos - now <= 0 && !endpoint.probing) {
+                    endpoint.probing = true;
+                    return endpoint;
+                } else if (soonestAvailable == null || endpoint.ejectedUntilNanos - soonestAvailable.ejectedUntilNanos < 0) {
+                    soonestAvailable = endpoint;
+                }
+            }
+        }
+
+        if (available.isEmpty()) {
+            return soonestAvailable;
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = available.get(first);
+        Endpoint b = available.get(second);
+        return a.cost(now, decayNanos) <= b.cost(now, decayNanos) ? a : b;
+    }
+
+    private static List<Endpoint> createEndpoints(String defaultBaseUrl, List<String> baseUrls) {
+        List<String> configured = baseUrls == null
+                ? List.of()
+                : baseUrls.stream().filter(url -> url != null && !url.isBlank()).map(String::trim).distinct().toList();
+        if (configured.size() <= 1) {
+            String label = configured.isEmpty() ? defaultBaseUrl : configured.get(0);
+            URI uri = configured.isEmpty() ? null : URI.create(configured.get(0));
+            return List.of(new Endpoint(label, uri));
+        }
+        return configured.stream().map(url -> new Endpoint(url, URI.create(url))).toList();
+    }
+
+    private static long positiveNanos(Duration duration) {
+        return duration == null || duration.isNegative() ? 0 : duration.toNanos();
+    }
+
+    static final class Endpoint {
+
+        private final String label;
+        private final URI baseUri;
+        private final AtomicInteger pending = new AtomicInteger();
+        private double ewmaNanos;
+        private long lastObservedNanos;
+        private boolean measured;
+        private int consecutiveFailures;
+        private long ejectedUntilNanos;
+        private boolean probing;
+
+        private Endpoint(String label, URI baseUri) {
+            this.label = label;
+            this.baseUri = baseUri;
+        }
+
+        String label() {
+            return label;
+        }
+
+        int pending() {
+            return pending.get();
+        }
+
+        synchronized boolean isEjected() {
+            return ejectedUntilNanos != 0;
+        }
+
+        synchronized double ewmaMillis() {
+            return ewmaNanos / 1_000_000.0;
+        }
+
+        UriBuilder apply(UriBuilder builder) {
+            if (baseUri == null) {
+                return builder;
+            }
+            return builder.scheme(baseUri.getScheme())
+                    .host(baseUri.getHost())
+                    .port(baseUri.getPort())
+                    .replacePath(baseUri.getRawPath());
+        }
+
+        private void observe(long latencyNanos, long now, double decayNanos) {
+            if (!measured) {
+                ewmaNanos = latencyNanos;
+                measured = true;
+            } else if (latencyNanos > ewmaNanos) {
+                ewmaNanos = latencyNanos;
+            } else {
+                double weight = Math.exp(-Math.max(0, now - lastObservedNanos) / decayNanos);
+                ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            lastObservedNanos = now;
+        }
+
+        private synchronized double cost(long now, double decayNanos) {
+            int inFlight = pending.get();
+            if (!measured) {
+                return inFlight;
+            }
+            double weight = Math.exp(-Math.max(0, now - lastObservedNanos) / decayNanos);
+            return ewmaNanos * weight * (inFlight + 1);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+public class UpstreamRateLimiter {
+
+    private final TokenBucket ttsRequests;
+    private final TokenBucket ttsCharacters;
+    private final TokenBucket sttRequests;
+    private final TokenBucket sttBytes;
+    private final long maxWaitNanos;
+    private final int maxQueued;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public UpstreamRateLimiter(SpeechKitProperties.RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    UpstreamRateLimiter(SpeechKitProperties.RateLimitProperties properties, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        double burstSeconds = properties.getBurstSeconds();
+        double maxRequestSeconds = properties.getMaxRequestSeconds();
+        this.ttsRequests = TokenBucket.create(properties.getTtsRequestsPerSecond(), burstSeconds, maxRequestSeconds, nanoClock);
+        this.ttsCharacters = TokenBucket.create(properties.getTtsCharactersPerSecond(), burstSeconds, maxRequestSeconds, nanoClock);
+        this.sttRequests = TokenBucket.create(properties.getSttRequestsPerSecond(), burstSeconds, maxRequestSeconds, nanoClock);
+        this.sttBytes = TokenBucket.create(properties.getSttBytesPerSecond(), burstSeconds, maxRequestSeconds, nanoClock);
+        Duration maxWait = properties.getMaxWait() == null ? Duration.ZERO : properties.getMaxWait();
+        this.maxWaitNanos = Math.max(0, maxWait.toNanos());
+        this.maxQueued = Math.max(0, properties.getMaxQueued());
+    }
+
+    public void acquireTts(int characters) {
+        acquire("tts", ttsRequests, 1, ttsCharacters, Math.max(0, characters));
+    }
+
+    public void acquireStt(long bytes) {
+        acquire("transcription", sttRequests, 1, sttBytes, Math.max(0, bytes));
+    }
+
+    private void acquire(String param, TokenBucket requestBucket, double requests, TokenBucket volumeBucket, double volume) {
+        long requestWait = reserve(requestBucket, requests);
+        if (requestWait < 0) {
+            throw rateLimited(param);
+        }
+        long volumeWait = reserve(volumeBucket, volume);
+        if (volumeWait < 0) {
+            refund(requestBucket, requests);
+            throw rateLimited(param);
+        }
+
+        long waitNanos = Math.max(requestWait, volumeWait);
+        if (waitNanos == 0) {
+            return;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            refund(requestBucket, requests);
+            refund(volumeBucket, volume);
+            throw rateLimited(param);
+        }
+        try {
+            sleep(waitNanos);
+        } catch (ApiException ex) {
+            refund(requestBucket, requests);
+            refund(volumeBucket, volume);
+            throw ex;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private long reserve(TokenBucket bucket, double permits) {
+        if (bucket == null || permits <= 0) {
+            return 0;
+        }
+        return bucket.reserve(permits, RequestDeadline.current().boundNanos(maxWaitNanos));
+    }
+
+    private void refund(TokenBucket bucket, double permits) {
+        if (bucket != null && permits > 0) {
+            bucket.refund(permits);
+        }
+    }
+
+    private void sleep(long waitNanos) {
+        long deadline = nanoClock.getAsLong() + waitNanos;
+        long remaining = waitNanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                throw rateLimited(null);
+            }
+            remaining = deadline - nanoClock.getAsLong();
+        }
+    }
+
+    private ApiException rateLimited(String param) {
+        return new ApiException(
+                HttpStatus.TOO_MANY_REQUESTS,
+                "Upstream rate limit exceeded",
+                "rate_limit_error",
+                param,
+                "rate_limit_exceeded"
+        );
+    }
+
+    static final class TokenBucket {
+
+        private final double permitsPerNano;
+        private final double capacity;
+        private final double maxCost;
+        private final LongSupplier nanoClock;
+        private double available;
+        private long lastRefillNanos;
+
+        private TokenBucket(double permitsPerSecond, double burstSeconds, double maxRequestSeconds, LongSupplier nanoClock) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1.0, permitsPerSecond * burstSeconds);
+            this.maxCost = maxRequestSeconds > 0 ? Math.max(1.0, permitsPerSecond * maxRequestSeconds) : Double.POSITIVE_INFINITY;
+            this.nanoClock = nanoClock;
+            this.available = capacity;
+            this.lastRefillNanos = nanoClock.getAsLong();
+        }
+
+        static TokenBucket create(double permitsPerSecond, double burstSeconds, double maxRequestSeconds, LongSupplier nanoClock) {
+            if (permitsPerSecond <= 0) {
+                return null;
+            }
+            return new TokenBucket(permitsPerSecond, Math.max(0, burstSeconds), maxRequestSeconds, nanoClock);
+        }
+
+        // The full cost is charged, so the balance may go negative and later callers queue behind this
+        // reservation; -1 means reject.
+        synchronized long reserve(double permits, long maxWaitNanos) {
+            if (permits > maxCost) {
+                return -1;
+            }
+            refill();
+            double deficit = permits - available;
+            long waitNanos = deficit <= 0 ? 0 : (long) Math.ceil(deficit / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            available -= permits;
+            return waitNanos;
+        }
+
+        synchronized void refund(double permits) {
+            available = Math.min(capacity, available + permits);
+        }
+
+        private void refill() {
+            long now = nanoClock.getAsLong();
+            long elapsed = now - lastRefillNanos;
+            if (elapsed > 0) {
+                available = Math.min(capacity, available + elapsed * permitsPerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
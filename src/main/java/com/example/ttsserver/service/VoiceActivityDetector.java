@@ -0,0 +1,211 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+final class VoiceActivityDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceActivityDetector.class);
+    private static final double FULL_SCALE_SQUARED = 32768.0 * 32768.0;
+    private static final double WEAK_SPEECH_MARGIN_DB = 10;
+
+    private final SpeechKitProperties.VadProperties properties;
+    private final DistributionSummary savedBytes;
+    private final DistributionSummary savedSeconds;
+
+    VoiceActivityDetector(SpeechKitProperties.VadProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.savedBytes = DistributionSummary.builder("asr.vad.saved.bytes")
+                .description("PCM bytes removed as silence before ASR upload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.savedSeconds = DistributionSummary.builder("asr.vad.saved.seconds")
+                .description("Audio seconds removed as silence before ASR upload")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    Result detect(AudioUpload pcm, int sampleRateHertz, int channels) throws IOException {
+        int sampleFrameBytes = 2 * channels;
+        FrameClassifier classifier = classifier(sampleRateHertz, channels);
+        int frameBytes = classifier.frameBytes();
+
+        BitSet speech = new BitSet();
+        int frames = 0;
+        byte[] buffer = new byte[frameBytes];
+        try (InputStream input = pcm.openStream()) {
+            int read;
+            while ((read = input.readNBytes(buffer, 0, frameBytes)) > 0) {
+                if (classifier.isSpeech(buffer, read)) {
+                    speech.set(frames);
+                }
+                frames++;
+            }
+        }
+
+        long keepPauseFrames = samples(properties.getKeepPause(), sampleRateHertz);
+        Result result = segments(speech, pcm.size(), frameBytes, keepPauseFrames / 2 * sampleFrameBytes, sampleFrameBytes);
+        long saved = result.inputBytes() - result.keptBytes();
+        savedBytes.record(saved);
+        savedSeconds.record((double) saved / sampleFrameBytes / sampleRateHertz);
+        log.debug("VAD kept {} of {} bytes in {} segments", result.keptBytes(), result.inputBytes(), result.kept().size());
+        return result;
+    }
+
+    FrameClassifier classifier(int sampleRateHertz, int channels) {
+        return classifier(properties, sampleRateHertz, channels);
+    }
+
+    static FrameClassifier classifier(SpeechKitProperties.VadProperties properties, int sampleRateHertz, int channels) {
+        int samplesPerFrame = (int) Math.max(1, samples(properties.getFrame(), sampleRateHertz));
+        int hangoverFrames = (int) ((samples(properties.getHangover(), sampleRateHertz) + samplesPerFrame - 1) / samplesPerFrame);
+        return new FrameClassifier(
+                channels,
+                samplesPerFrame * 2 * channels,
+                FULL_SCALE_SQUARED * Math.pow(10, properties.getEnergyThresholdDb() / 10),
+                properties.getZeroCrossingRate(),
+                hangoverFrames
+        );
+    }
+
+    static Result segments(BitSet speech, long totalBytes, long frameBytes, long paddingBytes, int sampleFrameBytes) {
+        List<Segment> kept = new ArrayList<>();
+        List<Long> splitPoints = new ArrayList<>();
+        long outputOffset = 0;
+        long rangeStart = -1;
+        long rangeEnd = -1;
+        int run = speech.nextSetBit(0);
+        while (run >= 0) {
+            int runEnd = speech.nextClearBit(run);
+            long speechStart = Math.min(totalBytes, run * frameBytes);
+            long speechEnd = Math.min(totalBytes, runEnd * frameBytes);
+            long start = Math.max(0, speechStart - paddingBytes);
+            long end = Math.min(totalBytes, speechEnd + paddingBytes);
+            if (rangeStart >= 0 && start <= rangeEnd) {
+                long pauseMiddle = align((rangeEnd - paddingBytes + speechStart) / 2, sampleFrameBytes);
+                splitPoints.add(outputOffset + pauseMiddle - rangeStart);
+                rangeEnd = end;
+            } else {
+                if (rangeStart >= 0) {
+                    kept.add(new Segment(rangeStart, rangeEnd - rangeStart));
+                    outputOffset += rangeEnd - rangeStart;
+                    splitPoints.add(outputOffset);
+                }
+                rangeStart = start;
+                rangeEnd = end;
+            }
+            run = speech.nextSetBit(runEnd);
+        }
+        if (rangeStart >= 0) {
+            kept.add(new Segment(rangeStart, rangeEnd - rangeStart));
+        }
+        return new Result(List.copyOf(kept), List.copyOf(splitPoints), totalBytes);
+    }
+
+    private static long samples(Duration duration, int sampleRateHertz) {
+        return duration == null ? 0 : duration.toMillis() * sampleRateHertz / 1000;
+    }
+
+    private static long align(long offset, int sampleFrameBytes) {
+        return offset - offset % sampleFrameBytes;
+    }
+
+    private static int sample(byte[] buffer, int index) {
+        return (short) ((buffer[2 * index] & 0xFF) | (buffer[2 * index + 1] << 8));
+    }
+
+    static final class FrameClassifier {
+
+        private final int channels;
+        private final int frameBytes;
+        private final double energyThreshold;
+        private final double weakEnergyThreshold;
+        private final double zeroCrossingThreshold;
+        private final int hangoverFrames;
+        private int hangover;
+
+        private FrameClassifier(int channels,
+                                int frameBytes,
+                                double energyThreshold,
+                                double zeroCrossingThreshold,
+                                int hangoverFrames) {
+            this.channels = channels;
+            this.frameBytes = frameBytes;
+            this.energyThreshold = energyThreshold;
+            this.weakEnergyThreshold = energyThreshold * Math.pow(10, -WEAK_SPEECH_MARGIN_DB / 10);
+            this.zeroCrossingThreshold = zeroCrossingThreshold;
+            this.hangoverFrames = hangoverFrames;
+        }
+
+        int frameBytes() {
+            return frameBytes;
+        }
+
+        boolean isSpeech(byte[] frame, int length) {
+            int sampleCount = length / 2;
+            double energy = 0;
+            int crossings = 0;
+            for (int i = 0; i < sampleCount; i++) {
+                int sample = sample(frame, i);
+                energy += (double) sample * sample;
+                if (i >= channels && (sample < 0) != (sample(frame, i - channels) < 0)) {
+                    crossings++;
+                }
+            }
+            energy = sampleCount == 0 ? 0 : energy / sampleCount;
+            double zeroCrossingRate = sampleCount > channels ? (double) crossings / (sampleCount - channels) : 0;
+            boolean active = energy >= energyThreshold
+                    || (energy >= weakEnergyThreshold && zeroCrossingRate >= zeroCrossingThreshold);
+            if (active) {
+                hangover = hangoverFrames;
+            } else if (hangover > 0) {
+                hangover--;
+                active = true;
+            }
+            return active;
+        }
+    }
+
+    record Segment(long offset, long length) {
+    }
+
+    record Result(List<Segment> kept, List<Long> splitPoints, long inputBytes) {
+
+        long keptBytes() {
+            long total = 0;
+            for (Segment segment : kept) {
+                total += segment.length();
+            }
+            return total;
+        }
+
+        boolean isSilent() {
+            return kept.isEmpty();
+        }
+
+        AudioUpload apply(AudioUpload pcm) {
+            if (kept.size() == 1 && kept.getFirst().length() == inputBytes) {
+                return pcm;
+            }
+            List<AudioUpload> parts = new ArrayList<>(kept.size());
+            for (Segment segment : kept) {
+                parts.add(pcm.slice(segment.offset(), segment.length()));
+            }
+            return AudioUpload.concat(parts);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.example.ttsserver.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public final class WavDecoder {
+
+    public static final int FORMAT_PCM = 1;
+    public static final int FORMAT_IEEE_FLOAT = 3;
+    public static final int FORMAT_ALAW = 6;
+    public static final int FORMAT_MULAW = 7;
+    public static final int ALL_CHANNELS = -1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final long UNKNOWN_DATA_LENGTH = 0xFFFFFFFFL;
+    private static final int FRAMES_PER_BLOCK = 4096;
+    private static final float[] MULAW_TABLE = mulawTable();
+    private static final float[] ALAW_TABLE = alawTable();
+
+    private WavDecoder() {
+    }
+
+    public static Header parseHeader(byte[] bytes) {
+        if (bytes == null || bytes.length < 20) {
+            return null;
+        }
+        if (!hasAscii(bytes, 0, "RIFF") || !hasAscii(bytes, 8, "WAVE")) {
+            return null;
+        }
+
+        Header format = null;
+        int offset = 12;
+        while (offset + 8 <= bytes.length) {
+            int chunkHeaderOffset = offset;
+            int dataOffset = offset + 8;
+            long chunkSize = uint32Le(bytes, offset + 4);
+
+            if (hasAscii(bytes, chunkHeaderOffset, "data")) {
+                if (format == null) {
+                    return null;
+                }
+                long dataLength = chunkSize == 0 ? UNKNOWN_DATA_LENGTH : chunkSize;
+                return format.withData(dataOffset, dataLength);
+            }
+
+            long nextOffset = dataOffset + chunkSize + (chunkSize % 2);
+            if (nextOffset > bytes.length) {
+                return format;
+            }
+
+            if (hasAscii(bytes, chunkHeaderOffset, "fmt ")) {
+                if (chunkSize < 16) {
+                    return null;
+                }
+                int encoding = uint16Le(bytes, dataOffset);
+                int channels = uint16Le(bytes, dataOffset + 2);
+                int sampleRateHertz = (int) uint32Le(bytes, dataOffset + 4);
+                int blockAlign = uint16Le(bytes, dataOffset + 12);
+                int bitsPerSample = uint16Le(bytes, dataOffset + 14);
+                if (encoding == FORMAT_EXTENSIBLE && chunkSize >= 26) {
+                    encoding = uint16Le(bytes, dataOffset + 24);
+                }
+                if (sampleRateHertz < 8000) {
+                    return null;
+                }
+                format = new Header(encoding, channels, sampleRateHertz, bitsPerSample, blockAlign, -1, 0);
+            }
+
+            offset = (int) nextOffset;
+        }
+
+        return format;
+    }
+
+    public static byte[] toPcm16(InputStream input,
+                                 Header header,
+                                 int targetChannels,
+                                 int targetSampleRateHertz,
+                                 long maxOutputFrames) throws IOException {
+        return convert(input, header, targetChannels == 1 ? 1 : header.channels(), ALL_CHANNELS, targetSampleRateHertz, maxOutputFrames);
+    }
+
+    public static byte[] channelToPcm16(InputStream input,
+                                        Header header,
+                                        int channel,
+                                        int targetSampleRateHertz,
+                                        long maxOutputFrames) throws IOException {
+        if (channel < 0 || channel >= header.channels()) {
+            throw new IllegalArgumentException("WAV has no channel " + channel);
+        }
+        return convert(input, header, 1, channel, targetSampleRateHertz, maxOutputFrames);
+    }
+
+    private static byte[] convert(InputStream input,
+                                  Header header,
+                                  int outChannels,
+                                  int sourceChannel,
+                                  int targetSampleRateHertz,
+                                  long maxOutputFrames) throws IOException {
+        if (!header.isDecodable()) {
+            throw new IllegalArgumentException("Unsupported WAV encoding " + header.encoding() + "/" + header.bitsPerSample());
+        }
+        int channels = header.channels();
+        int bytesPerSample = header.bitsPerSample() / 8;
+        int frameBytes = header.blockAlign() >= channels * bytesPerSample ? header.blockAlign() : channels * bytesPerSample;
+
+        input.skipNBytes(header.dataOffset());
+        long remaining = header.dataLength() == UNKNOWN_DATA_LENGTH ? Long.MAX_VALUE : header.dataLength();
+
+        Resampler[] resamplers = new Resampler[outChannels];
+        for (int channel = 0; channel < outChannels; channel++) {
+            resamplers[channel] = new Resampler(header.sampleRateHertz(), targetSampleRateHertz);
+        }
+        long limit = maxOutputFrames > 0 ? maxOutputFrames : Long.MAX_VALUE;
+        Pcm16Output output = new Pcm16Output(outChannels, limit);
+
+        byte[] block = new byte[FRAMES_PER_BLOCK * frameBytes];
+        float[][] samples = new float[outChannels][FRAMES_PER_BLOCK];
+        float[] scratch = new float[FRAMES_PER_BLOCK];
+        while (remaining > 0 && !output.isFull()) {
+            int toRead = (int) Math.min(block.length, remaining - remaining % frameBytes);
+            if (toRead < frameBytes) {
+                break;
+            }
+            int read = input.readNBytes(block, 0, toRead);
+            int frames = read / frameBytes;
+            if (frames == 0) {
+                break;
+            }
+            remaining -= read;
+            decodeBlock(block, frames, header, frameBytes, outChannels, sourceChannel, samples, scratch);
+            for (int channel = 0; channel < outChannels; channel++) {
+                resamplers[channel].process(samples[channel], frames, output, channel);
+            }
+            output.flushFrames();
+        }
+        return output.toByteArray();
+    }
+
+    public static StreamConverter streamConverter(Header header, int targetChannels, int targetSampleRateHertz) {
+        if (header.channels() < 1 || !header.withData(0, UNKNOWN_DATA_LENGTH).isDecodable()) {
+            throw new IllegalArgumentException("Unsupported WAV encoding " + header.encoding() + "/" + header.bitsPerSample());
+        }
+        return new StreamConverter(header, targetChannels, targetSampleRateHertz);
+    }
+
+    private static void decodeBlock(byte[] block,
+                                    int frames,
+                                    Header header,
+                                    int frameBytes,
+                                    int outChannels,
+                                    int sourceChannel,
+                                    float[][] samples,
+                                    float[] scratch) {
+        int channels = header.channels();
+        int bytesPerSample = header.bitsPerSample() / 8;
+        if (sourceChannel != ALL_CHANNELS) {
+            decodeChannel(block, frames, frameBytes, sourceChannel * bytesPerSample, header, samples[0]);
+            return;
+        }
+        if (outChannels == channels) {
+            for (int channel = 0; channel < channels; channel++) {
+                decodeChannel(block, frames, frameBytes, channel * bytesPerSample, header, samples[channel]);
+            }
+            return;
+        }
+        float[] mono = samples[0];
+        decodeChannel(block, frames, frameBytes, 0, header, mono);
+        for (int channel = 1; channel < channels; channel++) {
+            decodeChannel(block, frames, frameBytes, channel * bytesPerSample, header, scratch);
+            for (int frame = 0; frame < frames; frame++) {
+                mono[frame] += scratch[frame];
+            }
+        }
+        float scale = 1.0f / channels;
+        for (int frame = 0; frame < frames; frame++) {
+            mono[frame] *= scale;
+        }
+    }
+
+    private static void decodeChannel(byte[] in, int frames, int stride, int offset, Header header, float[] decoded) {
+        int encoding = header.encoding();
+        int bits = header.bitsPerSample();
+        if (encoding == FORMAT_MULAW || encoding == FORMAT_ALAW) {
+            float[] table = encoding == FORMAT_MULAW ? MULAW_TABLE : ALAW_TABLE;
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = table[in[p] & 0xff];
+            }
+        } else if (encoding == FORMAT_IEEE_FLOAT && bits == 64) {
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = (float) Double.longBitsToDouble(((long) uint32Le(in, p + 4) << 32) | uint32Le(in, p));
+            }
+        } else if (encoding == FORMAT_IEEE_FLOAT) {
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = Float.intBitsToFloat(int32Le(in, p));
+            }
+        } else if (bits == 8) {
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = ((in[p] & 0xff) - 128) * (1.0f / 128);
+            }
+        } else if (bits == 16) {
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = (short) ((in[p] & 0xff) | (in[p + 1] << 8)) * (1.0f / 32768);
+            }
+        } else if (bits == 24) {
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = ((in[p] & 0xff) | ((in[p + 1] & 0xff) << 8) | (in[p + 2] << 16)) * (1.0f / 8388608);
+            }
+        } else {
+            for (int i = 0, p = offset; i < frames; i++, p += stride) {
+                decoded[i] = int32Le(in, p) * (1.0f / 2147483648.0f);
+            }
+        }
+    }
+
+    private static float[] mulawTable() {
+        float[] table = new float[256];
+        for (int i = 0; i < 256; i++) {
+            int value = ~i & 0xff;
+            int exponent = (value >> 4) & 0x07;
+            int magnitude = (((value & 0x0f) << 3) + 0x84) << exponent;
+            int sample = (value & 0x80) != 0 ? 0x84 - magnitude : magnitude - 0x84;
+            table[i] = sample / 32768.0f;
+        }
+        return table;
+    }
+
+    private static float[] alawTable() {
+        float[] table = new float[256];
+        for (int i = 0; i < 256; i++) {
+            int value = i ^ 0x55;
+            int exponent = (value >> 4) & 0x07;
+            int magnitude = (value & 0x0f) << 4;
+            magnitude = exponent == 0 ? magnitude + 8 : (magnitude + 0x108) << (exponent - 1);
+            int sample = (value & 0x80) != 0 ? magnitude : -magnitude;
+            table[i] = sample / 32768.0f;
+        }
+        return table;
+    }
+
+    private static int int32Le(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | ((bytes[offset + 1] & 0xff) << 8)
+                | ((bytes[offset + 2] & 0xff) << 16)
+                | (bytes[offset + 3] << 24);
+    }
+
+    private static boolean hasAscii(byte[] bytes, int offset, String expected) {
+        if (offset < 0 || offset + expected.length() > bytes.length) {
+            return false;
+        }
+        byte[] expectedBytes = expected.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < expectedBytes.length; i++) {
+            if (bytes[offset + i] != expectedBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int uint16Le(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+    }
+
+    private static long uint32Le(byte[] bytes, int offset) {
+        return ((long) bytes[offset] & 0xff)
+                | (((long) bytes[offset + 1] & 0xff) << 8)
+                | (((long) bytes[offset + 2] & 0xff) << 16)
+                | (((long) bytes[offset + 3] & 0xff) << 24);
+    }
+
+    public record Header(int encoding,
+                         int channels,
+                         int sampleRateHertz,
+                         int bitsPerSample,
+                         int blockAlign,
+                         long dataOffset,
+                         long dataLength) {
+
+        public boolean isPcm16() {
+            return encoding == FORMAT_PCM && bitsPerSample == 16;
+        }
+
+        public boolean isDecodable() {
+            if (channels < 1 || dataOffset < 0) {
+                return false;
+            }
+            if (encoding == FORMAT_PCM) {
+                return bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 24 || bitsPerSample == 32;
+            }
+            if (encoding == FORMAT_ALAW || encoding == FORMAT_MULAW) {
+                return bitsPerSample == 8;
+            }
+            return encoding == FORMAT_IEEE_FLOAT && (bitsPerSample == 32 || bitsPerSample == 64);
+        }
+
+        private Header withData(long offset, long length) {
+            return new Header(encoding, channels, sampleRateHertz, bitsPerSample, blockAlign, offset, length);
+        }
+    }
+
+    public static final class StreamConverter {
+
+        private final Header header;
+        private final int outChannels;
+        private final int frameBytes;
+        private final Resampler[] resamplers;
+        private final Pcm16Output output;
+        private final byte[] block;
+        private final float[][] samples;
+        private final float[] scratch;
+        private int buffered;
+
+        private StreamConverter(Header header, int targetChannels, int targetSampleRateHertz) {
+            this.header = header;
+            int channels = header.channels();
+            int bytesPerSample = header.bitsPerSample() / 8;
+            this.outChannels = targetChannels == 1 ? 1 : channels;
+            this.frameBytes = header.blockAlign() >= channels * bytesPerSample ? header.blockAlign() : channels * bytesPerSample;
+            this.resamplers = new Resampler[outChannels];
+            for (int channel = 0; channel < outChannels; channel++) {
+                resamplers[channel] = new Resampler(header.sampleRateHertz(), targetSampleRateHertz);
+            }
+            this.output = new Pcm16Output(outChannels, Long.MAX_VALUE);
+            this.block = new byte[FRAMES_PER_BLOCK * frameBytes];
+            this.samples = new float[outChannels][FRAMES_PER_BLOCK];
+            this.scratch = new float[FRAMES_PER_BLOCK];
+        }
+
+        public byte[] convert(byte[] chunk, int offset, int length) {
+            int position = offset;
+            int end = offset + length;
+            while (position < end) {
+                int copied = Math.min(end - position, block.length - buffered);
+                System.arraycopy(chunk, position, block, buffered, copied);
+                buffered += copied;
+                position += copied;
+                int frames = buffered / frameBytes;
+                if (frames > 0) {
+                    decodeBlock(block, frames, header, frameBytes, outChannels, ALL_CHANNELS, samples, scratch);
+                    for (int channel = 0; channel < outChannels; channel++) {
+                        resamplers[channel].process(samples[channel], frames, output, channel);
+                    }
+                    int consumed = frames * frameBytes;
+                    System.arraycopy(block, consumed, block, 0, buffered - consumed);
+                    buffered -= consumed;
+                }
+            }
+            output.flushFrames();
+            return output.drain();
+        }
+    }
+
+    private static final class Resampler {
+
+        private final double step;
+        private final int window;
+        private final float[] history;
+        private float windowSum;
+        private int historyIndex;
+        private long inputIndex;
+        private double nextOutputPosition;
+        private float previous;
+
+        private Resampler(int inputRate, int outputRate) {
+            this.step = (double) inputRate / outputRate;
+            this.window = step > 1 ? (int) Math.round(step) : 1;
+            this.history = new float[window];
+        }
+
+        private void process(float[] samples, int count, Pcm16Output output, int channel) {
+            if (step == 1.0) {
+                for (int i = 0; i < count; i++) {
+                    output.put(channel, samples[i]);
+                }
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                float sample = samples[i];
+                if (window > 1) {
+                    windowSum += sample - history[historyIndex];
+                    history[historyIndex] = sample;
+                    historyIndex = (historyIndex + 1) % window;
+                    sample = windowSum / window;
+                }
+                if (inputIndex == 0) {
+                    previous = sample;
+                }
+                while (nextOutputPosition <= inputIndex) {
+                    double fraction = nextOutputPosition - (inputIndex - 1);
+                    float value = inputIndex == 0 ? sample : (float) (previous + (sample - previous) * fraction);
+                    output.put(channel, value);
+                    nextOutputPosition += step;
+                }
+                previous = sample;
+                inputIndex++;
+            }
+        }
+    }
+
+    private static final class Pcm16Output {
+
+        private final int channels;
+        private final long maxFrames;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ShortBuffer[] pending;
+        private long writtenFrames;
+
+        private Pcm16Output(int channels, long maxFrames) {
+            this.channels = channels;
+            this.maxFrames = maxFrames;
+            this.pending = new ShortBuffer[channels];
+            for (int channel = 0; channel < channels; channel++) {
+                pending[channel] = new ShortBuffer();
+            }
+        }
+
+        private void put(int channel, float value) {
+            int sample = Math.round(value * 32768.0f);
+            pending[channel].add((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample)));
+        }
+
+        private void flushFrames() {
+            int frames = pending[0].size;
+            for (int channel = 1; channel < channels; channel++) {
+                frames = Math.min(frames, pending[channel].size);
+            }
+            frames = (int) Math.min(frames, maxFrames - writtenFrames);
+            byte[] chunk = new byte[frames * channels * 2];
+            int position = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                for (int channel = 0; channel < channels; channel++) {
+                    short value = pending[channel].values[frame];
+                    chunk[position++] = (byte) value;
+                    chunk[position++] = (byte) (value >> 8);
+                }
+            }
+            bytes.write(chunk, 0, position);
+            writtenFrames += frames;
+            for (ShortBuffer buffer : pending) {
+                buffer.discard(frames);
+            }
+        }
+
+        private boolean isFull() {
+            return writtenFrames >= maxFrames;
+        }
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        private byte[] drain() {
+            byte[] drained = bytes.toByteArray();
+            bytes.reset();
+            return drained;
+        }
+    }
+
+    private static final class ShortBuffer {
+
+        private short[] values = new short[FRAMES_PER_BLOCK];
+        private int size;
+
+        private void add(short value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void discard(int count) {
+            System.arraycopy(values, count, values, 0, size - count);
+            size -= count;
+        }
+    }
+}
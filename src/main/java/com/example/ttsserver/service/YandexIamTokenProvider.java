@@ -4,6 +4,10 @@ import com.example.ttsserver.config.SpeechKitProperties;
 import com.example.ttsserver.error.ApiException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -23,11 +27,19 @@ import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -35,6 +47,13 @@ import java.util.regex.Pattern;
 @Component
 public class YandexIamTokenProvider implements TokenProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(YandexIamTokenProvider.class);
+    private static final long MIN_BACKGROUND_REFRESH_DELAY_MILLIS = 1000;
+    private static final long MAX_BACKGROUND_RETRY_DELAY_MILLIS = 60_000;
+    private static final long JWT_LIFETIME_SECONDS = 360;
+    private static final Duration PRESIGN_LEAD = Duration.ofSeconds(30);
+    private static final Duration PRESIGNED_JWT_MAX_AGE = Duration.ofSeconds(240);
+    private static final String METADATA_TOKEN_SUFFIX = "/token";
     private static final TypeReference<Map<String, String>> MAP_OF_STRING = new TypeReference<>() {
     };
     private static final Pattern PRIVATE_KEY_PEM_PATTERN = Pattern.compile(
@@ -43,27 +62,87 @@ public class YandexIamTokenProvider implements TokenProvider {
     );
 
     private final SpeechKitProperties properties;
+    private final SpeechKitProperties.AccountProperties credentials;
     private final RestClient restClient;
     private final ObjectMapper objectMapper;
     private final Clock clock;
     private final ReentrantLock refreshLock = new ReentrantLock();
     private final TokenSource source;
     private final ServiceAccountKey serviceAccountKey;
+    private final PrivateKey signingKey;
+    private final ApiException signingKeyError;
+    private final String encodedJwtHeader;
+    private final IamTokenStore tokenStore;
+    private final AtomicReference<PresignedJwt> presignedJwt = new AtomicReference<>();
+    private final ScheduledExecutorService refreshScheduler;
 
+    private final AtomicBoolean backgroundRefreshQueued = new AtomicBoolean();
+
+    private volatile String storeKey;
+    private volatile boolean storeKeyResolved;
     private volatile TokenSnapshot cachedToken;
+    private volatile boolean refreshFailing;
+    private volatile boolean refreshScheduled;
+    private volatile int consecutiveRefreshFailures;
+    private ScheduledFuture<?> scheduledRefresh;
+    private ScheduledFuture<?> scheduledPresign;
 
-    @Autowired
     public YandexIamTokenProvider(SpeechKitProperties properties, RestClient iamRestClient, ObjectMapper objectMapper) {
         this(properties, iamRestClient, objectMapper, Clock.systemUTC());
     }
 
+    @Autowired
+    public YandexIamTokenProvider(SpeechKitProperties properties,
+                                  RestClient iamRestClient,
+                                  ObjectMapper objectMapper,
+                                  ObjectProvider<IamTokenStore> tokenStore) {
+        this(properties, properties.primaryAccount(), iamRestClient, objectMapper, Clock.systemUTC(),
+                tokenStore.getIfAvailable(() -> IamTokenStore.NONE));
+    }
+
     YandexIamTokenProvider(SpeechKitProperties properties, RestClient restClient, ObjectMapper objectMapper, Clock clock) {
+        this(properties, properties.primaryAccount(), restClient, objectMapper, clock, IamTokenStore.NONE);
+    }
+
+    YandexIamTokenProvider(SpeechKitProperties properties,
+                           SpeechKitProperties.AccountProperties credentials,
+                           RestClient restClient,
+                           ObjectMapper objectMapper,
+                           Clock clock,
+                           IamTokenStore tokenStore) {
         this.properties = properties;
+        this.credentials = credentials;
         this.restClient = restClient;
         this.objectMapper = objectMapper;
         this.clock = clock;
-        this.source = resolveSource(properties);
+        this.source = resolveSource(credentials);
         this.serviceAccountKey = loadServiceAccountKeyIfNeeded();
+        PrivateKey key = null;
+        ApiException keyError = null;
+        if (serviceAccountKey != null) {
+            try {
+                key = readPrivateKey(serviceAccountKey.privateKeyPem());
+            } catch (ApiException ex) {
+                keyError = ex;
+            } catch (GeneralSecurityException ex) {
+                keyError = configError("Service account private_key is invalid or unsupported");
+            }
+        }
+        this.signingKey = key;
+        this.signingKeyError = keyError;
+        this.encodedJwtHeader = serviceAccountKey == null ? null : encodeJwtHeader(serviceAccountKey.id());
+        this.tokenStore = tokenStore;
+        this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("iam-token-refresh-" + credentials.getId()).factory()
+        );
+        if (source == TokenSource.SERVICE_ACCOUNT) {
+            resolveStoreKey();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        refreshScheduler.shutdownNow();
     }
 
     @Override
@@ -74,10 +153,16 @@ public class YandexIamTokenProvider implements TokenProvider {
 
         Instant now = clock.instant();
         TokenSnapshot snapshot = cachedToken;
-        if (snapshot != null && !shouldRefresh(snapshot.expiresAt(), now)) {
+        if (snapshot != null && now.isBefore(snapshot.expiresAt())) {
+            if (!refreshScheduled) {
+                scheduleBackgroundRefresh(snapshot);
+            }
+            if (shouldRefresh(snapshot.expiresAt(), now) && !refreshFailing) {
+                queueBackgroundRefresh();
+            }
             return snapshot.value();
         }
-        return refreshSingleflight(false);
+        return refreshSingleflight(false, null);
     }
 
     @Override
@@ -85,26 +170,246 @@ public class YandexIamTokenProvider implements TokenProvider {
         if (source == TokenSource.STATIC) {
             return;
         }
-        refreshSingleflight(true);
+        refreshSingleflight(true, null);
     }
 
-    private String refreshSingleflight(boolean force) {
-        refreshLock.lock();
+    @Override
+    public void forceRefresh(String rejectedToken) {
+        if (source == TokenSource.STATIC) {
+            return;
+        }
+        refreshSingleflight(true, rejectedToken);
+    }
+
+    private String refreshSingleflight(boolean force, String rejectedToken) {
+        int failuresBefore = consecutiveRefreshFailures;
+        lockForRequest(RequestDeadline.current());
         try {
+            if (!storeKeyResolved) {
+                resolveStoreKey();
+            }
             Instant now = clock.instant();
             TokenSnapshot snapshot = cachedToken;
-            if (!force && snapshot != null && !shouldRefresh(snapshot.expiresAt(), now)) {
+            boolean unexpired = snapshot != null && now.isBefore(snapshot.expiresAt());
+            if (unexpired && (!force || isNewerThan(snapshot, rejectedToken))) {
                 return snapshot.value();
             }
 
-            TokenSnapshot refreshed = refreshWithRetry();
-            cachedToken = refreshed;
+            if (consecutiveRefreshFailures > failuresBefore) {
+                throw temporaryError();
+            }
+
+            TokenSnapshot refreshed;
+            try {
+                refreshed = fetchToken();
+            } catch (ApiException ex) {
+                if (isTemporary(ex)) {
+                    onRefreshFailure(ex);
+                }
+                throw ex;
+            }
+            onRefreshSuccess(refreshed);
             return refreshed.value();
         } finally {
             refreshLock.unlock();
         }
     }
 
+    private void lockForRequest(RequestDeadline deadline) {
+        if (!deadline.isBounded()) {
+            refreshLock.lock();
+            return;
+        }
+        try {
+            if (!refreshLock.tryLock(deadline.remainingNanos(), TimeUnit.NANOSECONDS)) {
+                throw temporaryError();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw temporaryError();
+        }
+    }
+
+    private void restoreStoredToken() {
+        if (storeKey == null) {
+            return;
+        }
+        try {
+            tokenStore.load(storeKey)
+                    .map(stored -> new TokenSnapshot(stored.value(), stored.expiresAt()))
+                    .filter(snapshot -> clock.instant().isBefore(snapshot.expiresAt()))
+                    .ifPresent(snapshot -> {
+                        cachedToken = snapshot;
+                        log.info("Restored persisted IAM token account={} expires_at={}", credentials.getId(), snapshot.expiresAt());
+                    });
+        } catch (RuntimeException ex) {
+            log.warn("Failed to restore persisted IAM token account={} error={}", credentials.getId(), ex.getMessage());
+        }
+    }
+
+    private void persistToken(TokenSnapshot snapshot) {
+        if (storeKey == null) {
+            return;
+        }
+        try {
+            tokenStore.save(storeKey, new IamTokenStore.StoredToken(snapshot.value(), snapshot.expiresAt()));
+        } catch (RuntimeException ex) {
+            log.warn("Failed to persist IAM token account={} error={}", credentials.getId(), ex.getMessage());
+        }
+    }
+
+    private void resolveStoreKey() {
+        if (tokenStore == IamTokenStore.NONE) {
+            storeKeyResolved = true;
+            return;
+        }
+        switch (source) {
+            case SERVICE_ACCOUNT -> storeKey = "sa:" + serviceAccountKey.serviceAccountId() + ":" + serviceAccountKey.id();
+            case METADATA -> {
+                String identity = fetchMetadataIdentity();
+                if (identity == null) {
+                    return;
+                }
+                storeKey = identity.isEmpty() ? null : "metadata:" + identity;
+            }
+            case STATIC, NONE -> storeKey = null;
+        }
+        storeKeyResolved = true;
+        restoreStoredToken();
+    }
+
+    private String fetchMetadataIdentity() {
+        String tokenUrl = properties.getIamMetadataUrl();
+        if (!tokenUrl.endsWith(METADATA_TOKEN_SUFFIX)) {
+            return "";
+        }
+        String emailUrl = tokenUrl.substring(0, tokenUrl.length() - METADATA_TOKEN_SUFFIX.length()) + "/email";
+        try {
+            String email = trimToNull(restClient.get()
+                    .uri(emailUrl)
+                    .header("Metadata-Flavor", "Google")
+                    .retrieve()
+                    .body(String.class));
+            return email == null ? "" : email;
+        } catch (RestClientResponseException ex) {
+            log.warn("Metadata service account lookup failed account={} status={}; IAM tokens will not be persisted",
+                    credentials.getId(), ex.getStatusCode().value());
+            return "";
+        } catch (ResourceAccessException ex) {
+            return null;
+        }
+    }
+
+    private void onRefreshSuccess(TokenSnapshot refreshed) {
+        cachedToken = refreshed;
+        persistToken(refreshed);
+        consecutiveRefreshFailures = 0;
+        refreshFailing = false;
+        scheduleBackgroundRefresh(refreshed);
+    }
+
+    private void onRefreshFailure(ApiException ex) {
+        consecutiveRefreshFailures++;
+        refreshFailing = true;
+        long delayMillis = scheduleRetry(consecutiveRefreshFailures);
+        log.warn("IAM token refresh failed account={} consecutive_failures={} retry_in_ms={} error={}",
+                credentials.getId(), consecutiveRefreshFailures, delayMillis, ex.getMessage());
+    }
+
+    private boolean isNewerThan(TokenSnapshot snapshot, String rejectedToken) {
+        return rejectedToken != null && !rejectedToken.equals(snapshot.value());
+    }
+
+    private void queueBackgroundRefresh() {
+        if (backgroundRefreshQueued.compareAndSet(false, true)) {
+            try {
+                refreshScheduler.execute(this::refreshInBackground);
+            } catch (RejectedExecutionException ex) {
+                backgroundRefreshQueued.set(false);
+            }
+        }
+    }
+
+    private void refreshInBackground() {
+        backgroundRefreshQueued.set(false);
+        if (!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            TokenSnapshot snapshot = cachedToken;
+            if (snapshot != null && !shouldRefresh(snapshot.expiresAt(), clock.instant())) {
+                scheduleBackgroundRefresh(snapshot);
+                return;
+            }
+            TokenSnapshot refreshed = refreshWithRetry();
+            onRefreshSuccess(refreshed);
+            log.debug("IAM token refreshed in background account={} expires_at={}", credentials.getId(), refreshed.expiresAt());
+        } catch (ApiException ex) {
+            onRefreshFailure(ex);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private synchronized void scheduleBackgroundRefresh(TokenSnapshot snapshot) {
+        if (snapshot.expiresAt().equals(Instant.MAX)) {
+            return;
+        }
+        long delayMillis = Duration.between(clock.instant(), refreshAt(snapshot.expiresAt())).toMillis();
+        reschedule(Math.max(MIN_BACKGROUND_REFRESH_DELAY_MILLIS, delayMillis));
+        schedulePresign(delayMillis - PRESIGN_LEAD.toMillis());
+    }
+
+    private void schedulePresign(long delayMillis) {
+        if (signingKey == null) {
+            return;
+        }
+        if (scheduledPresign != null) {
+            scheduledPresign.cancel(false);
+        }
+        try {
+            scheduledPresign = refreshScheduler.schedule(this::presignJwt, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            scheduledPresign = null;
+        }
+    }
+
+    void presignJwt() {
+        try {
+            presignedJwt.set(new PresignedJwt(createServiceAccountJwt(signingKey, encodedJwtHeader), clock.instant()));
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            log.warn("Failed to pre-sign IAM exchange JWT account={} error={}", credentials.getId(), ex.getMessage());
+        }
+    }
+
+    String takePresignedJwt() {
+        PresignedJwt presigned = presignedJwt.getAndSet(null);
+        if (presigned == null) {
+            return null;
+        }
+        Duration age = Duration.between(presigned.issuedAt(), clock.instant());
+        return age.isNegative() || age.compareTo(PRESIGNED_JWT_MAX_AGE) > 0 ? null : presigned.value();
+    }
+
+    private synchronized long scheduleRetry(int failures) {
+        long base = Math.max(MIN_BACKGROUND_REFRESH_DELAY_MILLIS, properties.getTokenRefreshRetryMaxMillis());
+        long retryMillis = Math.min(MAX_BACKGROUND_RETRY_DELAY_MILLIS, base << Math.min(16, Math.max(0, failures - 1)));
+        reschedule(retryMillis);
+        return retryMillis;
+    }
+
+    private void reschedule(long delayMillis) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        refreshScheduled = true;
+        try {
+            scheduledRefresh = refreshScheduler.schedule(this::queueBackgroundRefresh, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            scheduledRefresh = null;
+        }
+    }
+
     private TokenSnapshot refreshWithRetry() {
         ApiException lastTemporary = null;
         int attempts = Math.max(1, properties.getTokenRefreshRetryAttempts());
@@ -136,11 +441,16 @@ public class YandexIamTokenProvider implements TokenProvider {
     }
 
     private TokenSnapshot exchangeServiceAccountJwt() {
-        String jwt;
-        try {
-            jwt = createServiceAccountJwt(serviceAccountKey);
-        } catch (GeneralSecurityException ex) {
-            throw configError("Failed to sign IAM exchange JWT");
+        if (signingKeyError != null) {
+            throw signingKeyError;
+        }
+        String jwt = takePresignedJwt();
+        if (jwt == null) {
+            try {
+                jwt = createServiceAccountJwt(signingKey, encodedJwtHeader);
+            } catch (GeneralSecurityException ex) {
+                throw configError("Failed to sign IAM exchange JWT");
+            }
         }
 
         try {
@@ -221,21 +531,19 @@ public class YandexIamTokenProvider implements TokenProvider {
         throw temporaryError();
     }
 
-    private String createServiceAccountJwt(ServiceAccountKey key) throws GeneralSecurityException {
+    String createServiceAccountJwt(PrivateKey key, String encodedHeader) throws GeneralSecurityException {
         Instant now = clock.instant();
         long iat = now.getEpochSecond();
-        long exp = now.plusSeconds(360).getEpochSecond();
+        long exp = now.plusSeconds(JWT_LIFETIME_SECONDS).getEpochSecond();
 
-        String headerJson = toJson(Map.of("alg", "PS256", "typ", "JWT", "kid", key.id()));
         String payloadJson = toJson(Map.of(
                 "aud", properties.getIamTokenUrl(),
-                "iss", key.serviceAccountId(),
+                "iss", serviceAccountKey.serviceAccountId(),
                 "iat", iat,
                 "exp", exp,
                 "jti", UUID.randomUUID().toString()
         ));
 
-        String encodedHeader = base64Url(headerJson.getBytes(StandardCharsets.UTF_8));
         String encodedPayload = base64Url(payloadJson.getBytes(StandardCharsets.UTF_8));
         String signingInput = encodedHeader + "." + encodedPayload;
 
@@ -247,14 +555,19 @@ public class YandexIamTokenProvider implements TokenProvider {
                 32,
                 1
         ));
-        signature.initSign(readPrivateKey(key.privateKeyPem()));
+        signature.initSign(key);
         signature.update(signingInput.getBytes(StandardCharsets.UTF_8));
         byte[] signed = signature.sign();
 
         return signingInput + "." + base64Url(signed);
     }
 
-    private PrivateKey readPrivateKey(String pem) throws GeneralSecurityException {
+    String encodeJwtHeader(String keyId) {
+        String headerJson = toJson(Map.of("alg", "PS256", "typ", "JWT", "kid", keyId));
+        return base64Url(headerJson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    PrivateKey readPrivateKey(String pem) throws GeneralSecurityException {
         String value = trimToNull(pem);
         if (value == null) {
             throw configError("Service account private_key is invalid (empty)");
@@ -335,20 +648,29 @@ public class YandexIamTokenProvider implements TokenProvider {
     }
 
     private String requireStaticToken() {
-        String token = properties.getIamToken();
+        String token = credentials.getIamToken();
         if (token == null || token.isBlank()) {
             throw configError("YANDEX_IAM_TOKEN is not set");
         }
         return token;
     }
 
-    private boolean shouldRefresh(Instant expiresAt, Instant now) {
-        Instant refreshAt = expiresAt.minusSeconds(Math.max(0, properties.getTokenSkewSeconds()));
-        if (!now.isBefore(refreshAt)) {
-            return true;
+    private boolean isUsable(Instant expiresAt, Instant now) {
+        if (!now.isBefore(expiresAt)) {
+            return false;
         }
         long ttl = expiresAt.getEpochSecond() - now.getEpochSecond();
-        return ttl < properties.getTokenMinTtlSeconds();
+        return ttl >= properties.getTokenMinTtlSeconds();
+    }
+
+    private boolean shouldRefresh(Instant expiresAt, Instant now) {
+        return !now.isBefore(refreshAt(expiresAt)) || !isUsable(expiresAt, now);
+    }
+
+    private Instant refreshAt(Instant expiresAt) {
+        return expiresAt
+                .minusSeconds(Math.max(0, properties.getTokenSkewSeconds()))
+                .minusSeconds(Math.max(0, properties.getTokenRefreshAheadSeconds()));
     }
 
     private void sleepWithBackoff(int attempt) {
@@ -389,7 +711,7 @@ public class YandexIamTokenProvider implements TokenProvider {
     }
 
     private String readSaKeyJson() {
-        String fromFile = trimToNull(properties.getSaKeyFile());
+        String fromFile = trimToNull(credentials.getSaKeyFile());
         if (fromFile != null) {
             try {
                 return Files.readString(Path.of(fromFile), StandardCharsets.UTF_8);
@@ -397,14 +719,14 @@ public class YandexIamTokenProvider implements TokenProvider {
                 throw configError("Unable to read service account key file");
             }
         }
-        String fromRaw = trimToNull(properties.getSaKeyJson());
+        String fromRaw = trimToNull(credentials.getSaKeyJson());
         if (fromRaw != null) {
             return fromRaw;
         }
         throw configError("Service account key is not configured");
     }
 
-    private TokenSource resolveSource(SpeechKitProperties p) {
+    private TokenSource resolveSource(SpeechKitProperties.AccountProperties p) {
         if (trimToNull(p.getSaKeyFile()) != null || trimToNull(p.getSaKeyJson()) != null) {
             return TokenSource.SERVICE_ACCOUNT;
         }
@@ -476,4 +798,7 @@ public class YandexIamTokenProvider implements TokenProvider {
 
     private record ServiceAccountKey(String id, String serviceAccountId, String privateKeyPem) {
     }
+
+    private record PresignedJwt(String value, Instant issuedAt) {
+    }
 }
@@ -0,0 +1,85 @@
+package com.example.ttsserver.web;
+
+import com.example.ttsserver.service.RequestDeadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private static final Logger log = LoggerFactory.getLogger(RequestDeadlineFilter.class);
+    private static final ScheduledExecutorService EXPIRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("request-deadline").daemon().factory()
+    );
+
+    private final Duration maxRequestTimeout;
+
+    public RequestDeadlineFilter(@Value("${app.speechkit.max-request-timeout:120s}") Duration maxRequestTimeout) {
+        this.maxRequestTimeout = maxRequestTimeout;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Duration timeout = resolveTimeout(request.getHeader(REQUEST_TIMEOUT_HEADER));
+        if (timeout == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RequestDeadline deadline = RequestDeadline.after(timeout);
+        ScheduledFuture<?> expiry = EXPIRY_SCHEDULER.schedule(deadline::cancel, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        try (RequestDeadline.Scope ignored = deadline.attach()) {
+            filterChain.doFilter(request, response);
+        } finally {
+            expiry.cancel(false);
+        }
+    }
+
+    private Duration resolveTimeout(String headerValue) {
+        Duration max = maxRequestTimeout;
+        boolean hasMax = max != null && !max.isZero() && !max.isNegative();
+        Duration requested = parseTimeout(headerValue);
+        if (requested == null) {
+            return hasMax ? max : null;
+        }
+        if (hasMax && requested.compareTo(max) > 0) {
+            return max;
+        }
+        return requested;
+    }
+
+    private Duration parseTimeout(String headerValue) {
+        if (headerValue == null || headerValue.isBlank()) {
+            return null;
+        }
+        String value = headerValue.trim();
+        try {
+            Duration parsed = value.matches("\\d+(\\.\\d+)?")
+                    ? Duration.ofMillis(new BigDecimal(value).movePointRight(3).longValue())
+                    : DurationStyle.detectAndParse(value);
+            return parsed.isNegative() || parsed.isZero() ? null : parsed;
+        } catch (RuntimeException ex) {
+            log.debug("Ignoring invalid {} header value={}", REQUEST_TIMEOUT_HEADER, value);
+            return null;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.ttsserver.api.asr;
 
 import com.example.ttsserver.config.CompatProperties;
 import com.example.ttsserver.service.AsrService;
+import com.example.ttsserver.service.TranscriptionJob;
+import com.example.ttsserver.service.TranscriptionJobService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -10,11 +12,19 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -27,6 +37,9 @@ class AsrControllerTest {
     @MockBean
     private AsrService asrService;
 
+    @MockBean
+    private TranscriptionJobService transcriptionJobService;
+
     @MockBean
     private CompatProperties compatProperties;
 
@@ -57,4 +70,56 @@ class AsrControllerTest {
                 .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
                 .andExpect(content().string("hello world"));
     }
+
+    @Test
+    void returnsPerChannelTranscriptsWhenSplittingChannels() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "call.wav", MediaType.APPLICATION_OCTET_STREAM_VALUE, "abc".getBytes());
+        given(compatProperties.isStrict()).willReturn(true);
+        given(asrService.transcribeChannels(any(), nullable(String.class))).willReturn(List.of("добрый день", "здравствуйте"));
+
+        mockMvc.perform(multipart("/v1/audio/transcriptions")
+                        .file(file)
+                        .param("model", "whisper-1")
+                        .param("split_channels", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.text").value("добрый день\nздравствуйте"))
+                .andExpect(jsonPath("$.channels[0].channel").value(0))
+                .andExpect(jsonPath("$.channels[1].text").value("здравствуйте"));
+    }
+
+    @Test
+    void acceptsTranscriptionJobAndReturnsItsLocation() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "a.wav", MediaType.APPLICATION_OCTET_STREAM_VALUE, "abc".getBytes());
+        TranscriptionJob job = new TranscriptionJob("job_1", TranscriptionJob.Status.QUEUED, Instant.ofEpochSecond(1700000000), null, null, null, null);
+        given(compatProperties.isStrict()).willReturn(true);
+        given(transcriptionJobService.submit(any(), eq("ru-RU"), eq(URI.create("https://example.com/done")))).willReturn(job);
+
+        mockMvc.perform(multipart("/v1/audio/transcriptions/jobs")
+                        .file(file)
+                        .param("model", "whisper-1")
+                        .param("language", "ru-RU")
+                        .param("callback_url", "https://example.com/done"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/v1/audio/transcriptions/jobs/job_1"))
+                .andExpect(jsonPath("$.id").value("job_1"))
+                .andExpect(jsonPath("$.status").value("queued"))
+                .andExpect(jsonPath("$.created_at").value(1700000000))
+                .andExpect(jsonPath("$.text").doesNotExist());
+    }
+
+    @Test
+    void rejectsNonHttpCallbackUrlAndUnknownJob() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "a.wav", MediaType.APPLICATION_OCTET_STREAM_VALUE, "abc".getBytes());
+        given(transcriptionJobService.find("job_missing")).willReturn(Optional.empty());
+
+        mockMvc.perform(multipart("/v1/audio/transcriptions/jobs")
+                        .file(file)
+                        .param("model", "whisper-1")
+                        .param("callback_url", "file:///etc/passwd"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error.param").value("callback_url"));
+        mockMvc.perform(get("/v1/audio/transcriptions/jobs/job_missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error.code").value("not_found"));
+    }
 }
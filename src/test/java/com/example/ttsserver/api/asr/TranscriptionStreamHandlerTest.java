@@ -0,0 +1,72 @@
+package com.example.ttsserver.api.asr;
+
+import com.example.ttsserver.service.StreamingRecognizer;
+import com.example.ttsserver.service.StreamingTranscriptionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TranscriptionStreamHandlerTest {
+
+    @Test
+    void answersMalformedJsonWithErrorEventAndPolicyViolation() throws Exception {
+        StreamingRecognizer.Session recognition = mock(StreamingRecognizer.Session.class);
+        WebSocketSession session = openSession(recognition);
+
+        handler(recognition).handleMessage(session, new TextMessage("{not json"));
+
+        assertThat(sentText(session)).contains("\"type\":\"error\"").contains("\"code\":\"invalid_json\"");
+        verify(session).close(CloseStatus.POLICY_VIOLATION);
+        verify(recognition, never()).finish();
+    }
+
+    @Test
+    void answersUnknownEventTypeWithErrorEventAndPolicyViolation() throws Exception {
+        StreamingRecognizer.Session recognition = mock(StreamingRecognizer.Session.class);
+        WebSocketSession session = openSession(recognition);
+
+        handler(recognition).handleMessage(session, new TextMessage("{\"type\":\"pause\"}"));
+
+        assertThat(sentText(session)).contains("\"type\":\"error\"").contains("Unsupported event type: pause");
+        verify(session).close(CloseStatus.POLICY_VIOLATION);
+    }
+
+    private WebSocketSession openSession(StreamingRecognizer.Session recognition) throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        given(session.getUri()).willReturn(URI.create("ws://localhost/v1/audio/transcriptions/stream?language=ru-RU"));
+        given(session.getAttributes()).willReturn(attributes);
+        given(session.isOpen()).willReturn(true);
+        handler(recognition).afterConnectionEstablished(session);
+        return session;
+    }
+
+    private TranscriptionStreamHandler handler(StreamingRecognizer.Session recognition) {
+        StreamingTranscriptionService service = mock(StreamingTranscriptionService.class);
+        given(service.open(any(), anyInt(), anyInt(), any(), any())).willReturn(recognition);
+        return new TranscriptionStreamHandler(service, new ObjectMapper());
+    }
+
+    private String sentText(WebSocketSession session) throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session).sendMessage(sent.capture());
+        return ((TextMessage) sent.getValue()).getPayload();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ttsserver.config;
+
+import com.example.ttsserver.error.ApiException;
+import com.example.ttsserver.service.AudioFormat;
+import com.example.ttsserver.service.AudioUpload;
+import com.example.ttsserver.service.RequestDeadline;
+import com.example.ttsserver.service.SpeechKitClient;
+import com.example.ttsserver.service.TokenProvider;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineAwareClientHttpRequestFactoryTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void boundsUpstreamReadTimeoutByRequestDeadline() {
+        server.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(5, TimeUnit.SECONDS));
+        SpeechKitClient client = client();
+
+        long started = System.nanoTime();
+        try (RequestDeadline.Scope ignored = RequestDeadline.after(Duration.ofMillis(300)).attach()) {
+            assertThatThrownBy(() -> client.synthesize("hello", "masha", "ru-RU", null, AudioFormat.MP3))
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertDeadlineExceeded((ApiException) ex));
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(3000);
+    }
+
+    @Test
+    void cancellationDisconnectsInFlightUpstreamCall() {
+        server.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(5, TimeUnit.SECONDS));
+        SpeechKitClient client = client();
+        RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(20));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        long started = System.nanoTime();
+        try (RequestDeadline.Scope ignored = deadline.attach()) {
+            scheduler.schedule(deadline::cancel, 200, TimeUnit.MILLISECONDS);
+            assertThatThrownBy(() -> client.recognize("abc".getBytes(), "a.ogg", "ru-RU", "oggopus", null))
+                    .isInstanceOf(ApiException.class)
+                    .satisfies(ex -> assertDeadlineExceeded((ApiException) ex));
+        } finally {
+            scheduler.shutdownNow();
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(3000);
+    }
+
+    @Test
+    void streamsUploadWithFixedLengthAndReopensItOnRetry() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(401).setBody("unauthorized"));
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"result\":\"ok\"}"));
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        properties.setMaxRetryOnAuthError(1);
+        byte[] audio = new byte[256 * 1024];
+        Arrays.fill(audio, (byte) 7);
+        AtomicInteger opens = new AtomicInteger();
+        AudioUpload upload = new AudioUpload() {
+            @Override
+            public long size() {
+                return audio.length;
+            }
+
+            @Override
+            public InputStream openStream() {
+                opens.incrementAndGet();
+                return new ByteArrayInputStream(audio);
+            }
+        };
+
+        assertThat(client(properties).recognize(upload, "a.ogg", "ru-RU", "oggopus", null)).isEqualTo("ok");
+
+        assertThat(opens).hasValue(2);
+        server.takeRequest(2, TimeUnit.SECONDS);
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getHeader("Content-Length")).isEqualTo(String.valueOf(audio.length));
+        assertThat(request.getHeader("Transfer-Encoding")).isNull();
+        assertThat(request.getBody().readByteArray()).isEqualTo(audio);
+    }
+
+    private void assertDeadlineExceeded(ApiException ex) {
+        assertThat(ex.getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThat(ex.getCode()).isEqualTo("deadline_exceeded");
+    }
+
+    private SpeechKitClient client() {
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        properties.setMaxRetryOnAuthError(0);
+        return client(properties);
+    }
+
+    private SpeechKitClient client(SpeechKitProperties properties) {
+        DeadlineAwareClientHttpRequestFactory factory = new DeadlineAwareClientHttpRequestFactory();
+        factory.setReadTimeout(10_000);
+        RestClient restClient = RestClient.builder()
+                .requestFactory(factory)
+                .baseUrl(server.url("/").toString())
+                .build();
+        return new SpeechKitClient(restClient, restClient, properties, new StaticTokenProvider());
+    }
+
+    private static final class StaticTokenProvider implements TokenProvider {
+
+        @Override
+        public String getToken() {
+            return "iam-token";
+        }
+
+        @Override
+        public void forceRefresh() {
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import jakarta.servlet.http.Part;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.support.StandardMultipartHttpServletRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisabledOnOs(OS.WINDOWS)
+class AsrServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void pipeModeStreamsUploadThroughFfmpegStdinAndStdout() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        byte[] audio = new byte[512 * 1024];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) i;
+        }
+        AsrService service = service(fakeFfmpeg("exec cat"));
+
+        String text = service.transcribe(new MockMultipartFile("file", "a.m4a", "audio/mp4", audio), "ru-RU");
+
+        assertThat(text).isEqualTo("ok text");
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=lpcm").contains("sampleRateHertz=16000");
+        assertThat(request.getBody().readByteArray()).isEqualTo(audio);
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.filter(path -> path.getFileName().toString().startsWith("asr-"))).isEmpty();
+        }
+    }
+
+    @Test
+    void fileModeMovesServletSpoolFileIntoFfmpegInput() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        byte[] audio = new byte[64 * 1024];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) (i * 7);
+        }
+        Path spool = Files.write(tempDir.resolve("upload_0001.tmp"), audio);
+        SpooledPart part = new SpooledPart(spool, "a.m4a");
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("POST", "/v1/audio/transcriptions");
+        servletRequest.setContentType("multipart/form-data; boundary=x");
+        servletRequest.addPart(part);
+        MultipartFile file = new StandardMultipartHttpServletRequest(servletRequest).getFile("file");
+        Path ffmpegInput = tempDir.resolve("ffmpeg-input");
+        SpeechKitProperties properties = normalizingProperties(fakeFfmpeg(
+                "while [ $# -gt 1 ]; do [ \"$1\" = -i ] && in=\"$2\"; shift; done; echo \"$in\" > " + ffmpegInput
+                        + "; cat \"$in\" > \"$1\""));
+        properties.getAsrNormalize().setMode(SpeechKitProperties.NormalizeMode.FILE);
+
+        assertThat(service(properties).transcribe(file, "ru-RU")).isEqualTo("ok text");
+
+        assertThat(part.writes).hasSize(1);
+        Path moved = Path.of(part.writes.getFirst());
+        assertThat(moved.getParent()).isEqualTo(tempDir);
+        assertThat(Files.readString(ffmpegInput).trim()).isEqualTo(moved.toString());
+        assertThat(spool).doesNotExist();
+        assertThat(moved).doesNotExist();
+        assertThat(server.takeRequest(2, TimeUnit.SECONDS).getBody().readByteArray()).isEqualTo(audio);
+    }
+
+    @Test
+    void pipeModeMapsFfmpegFailureWithCappedStderr() throws Exception {
+        AsrService service = service(fakeFfmpeg("cat > /dev/null; echo 'Invalid data found' >&2; exit 1"));
+
+        assertThatThrownBy(() -> service.transcribe(new MockMultipartFile("file", "a.bin", null, new byte[]{1, 2, 3}), "ru-RU"))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> {
+                    ApiException api = (ApiException) ex;
+                    assertThat(api.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(api.getCode()).isEqualTo("unsupported_media_type");
+                    assertThat(api.getMessage()).isEqualTo("Audio conversion failed: Invalid data found");
+                });
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    @Test
+    void convertsPcmWavInProcessWithoutSpawningFfmpeg() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        byte[] wav = WavEncoder.fromPcmS16Le(new byte[48000 * 2 * 2], 48000, 2);
+        AsrService service = service(fakeFfmpeg("exit 1"));
+
+        String text = service.transcribe(new MockMultipartFile("file", "call.wav", "audio/wav", wav), "ru-RU");
+
+        assertThat(text).isEqualTo("ok text");
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=lpcm").contains("sampleRateHertz=16000");
+        assertThat(request.getBodySize()).isEqualTo(16000 * 2);
+    }
+
+    @Test
+    void converts24BitWavTo16BitWithoutNormalization() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        ByteBuffer wav = ByteBuffer.allocate(44 + 6).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + 6).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(16000).putInt(48000).putShort((short) 3).putShort((short) 24);
+        wav.put("data".getBytes()).putInt(6).put(new byte[]{0, 0, 0x40, 0, 0, (byte) 0xC0});
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+
+        String text = service(properties).transcribe(new MockMultipartFile("file", "call.wav", "audio/wav", wav.array()), "ru-RU");
+
+        assertThat(text).isEqualTo("ok text");
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=lpcm").contains("sampleRateHertz=16000");
+        assertThat(request.getBody().readByteArray()).containsExactly(0, 0x40, 0, (byte) 0xC0);
+    }
+
+    @Test
+    void resamplesUnsupportedWavRateWithinNormalizationLimitsWithoutNormalization() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        byte[] wav = WavEncoder.fromPcmS16Le(new byte[44100 * 2 * 2], 44100, 2);
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+
+        assertThat(service(properties).transcribe(new MockMultipartFile("file", "call.wav", "audio/wav", wav), "ru-RU"))
+                .isEqualTo("ok text");
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=lpcm").contains("sampleRateHertz=16000");
+        assertThat(request.getBodySize()).isEqualTo(16000 * 2);
+
+        properties.getAsrNormalize().setMaxInputBytes(wav.length - 1);
+        assertThatThrownBy(() -> service(properties).transcribe(new MockMultipartFile("file", "call.wav", "audio/wav", wav), "ru-RU"))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getCode()).isEqualTo("file_too_large"));
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void sendsShortOggOpusAsIsWithoutSpawningFfmpeg() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        byte[] ogg = AudioFormatSnifferTest.oggOpus(312, 312 + 48000 * 5, 40_000);
+        AsrService service = service(fakeFfmpeg("exit 1"));
+
+        String text = service.transcribe(new MockMultipartFile("file", "voice.bin", "application/octet-stream", ogg), "ru-RU");
+
+        assertThat(text).isEqualTo("ok text");
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=oggopus").doesNotContain("sampleRateHertz");
+        assertThat(request.getBody().readByteArray()).isEqualTo(ogg);
+    }
+
+    @Test
+    void normalizesOggOpusLongerThanOneRecognitionWindow() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        byte[] ogg = AudioFormatSnifferTest.oggOpus(312, 312 + 48000 * 40, 40_000);
+        AsrService service = service(fakeFfmpeg("cat > /dev/null; printf 'pcm'"));
+
+        assertThat(service.transcribe(new MockMultipartFile("file", "voice.ogg", "audio/ogg", ogg), "ru-RU")).isEqualTo("ok text");
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=lpcm");
+        assertThat(request.getBody().readUtf8()).isEqualTo("pcm");
+    }
+
+    @Test
+    void trustsMagicBytesOverMisleadingExtension() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        byte[] ogg = AudioFormatSnifferTest.oggOpus(312, 48000, 1000);
+
+        service(properties).transcribe(new MockMultipartFile("file", "voice.wav", "audio/wav", ogg), "ru-RU");
+
+        assertThat(server.takeRequest(2, TimeUnit.SECONDS).getPath()).contains("format=oggopus");
+    }
+
+    @Test
+    void encodesOggOpusInOneFfmpegPassWhenNotChunked() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        Path args = tempDir.resolve("ffmpeg-args");
+        SpeechKitProperties properties = normalizingProperties(fakeFfmpeg(
+                "echo \"$@\" >> " + args + "; cat > /dev/null; printf 'OggS'"));
+        properties.getAsrNormalize().setTargetFormat(SpeechKitProperties.NormalizeTarget.OGGOPUS);
+        properties.getAsrNormalize().setOpusBitrate(16000);
+        properties.getAsrNormalize().setNativePassthrough(false);
+        byte[] mp3 = new byte[128_000 / 8 * 4];
+        mp3[0] = (byte) 0xFF;
+        mp3[1] = (byte) 0xFB;
+        mp3[2] = (byte) 0x90;
+        mp3[3] = (byte) 0x44;
+
+        assertThat(service(properties).transcribe(new MockMultipartFile("file", "a.mp3", "audio/mpeg", mp3), "ru-RU"))
+                .isEqualTo("ok text");
+
+        RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(request.getPath()).contains("format=oggopus").doesNotContain("sampleRateHertz");
+        assertThat(request.getBody().readUtf8()).isEqualTo("OggS");
+        assertThat(Files.readAllLines(args)).singleElement().satisfies(line -> assertThat(line)
+                .contains("-i pipe:0")
+                .endsWith("-ac 1 -ar 16000 -c:a libopus -b:a 16000 -application voip -f ogg pipe:1"));
+    }
+
+    @Test
+    void encodesNormalizedPcmAsOggOpusForEachWindow() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200)
+                    .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .setBody("{\"result\":\"part" + i + "\"}"));
+        }
+        Path args = tempDir.resolve("opus-args");
+        SpeechKitProperties properties = normalizingProperties(fakeFfmpeg(
+                "case \"$*\" in *libopus*) echo \"$@\" >> " + args + "; cat > /dev/null; printf 'OggS';; *) exec cat;; esac"));
+        properties.getAsrNormalize().setTargetFormat(SpeechKitProperties.NormalizeTarget.OGGOPUS);
+        properties.getAsrNormalize().setOpusBitrate(16000);
+        properties.getAsrLongAudio().setWindow(Duration.ofSeconds(1));
+        properties.getAsrLongAudio().setOverlap(Duration.ZERO);
+        byte[] pcm = new byte[16000 * 2 * 2];
+
+        String text = service(properties).transcribe(new MockMultipartFile("file", "a.m4a", "audio/mp4", pcm), "ru-RU");
+
+        assertThat(text).isEqualTo("part0 part1");
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+            assertThat(request.getPath()).contains("format=oggopus").doesNotContain("sampleRateHertz");
+            assertThat(request.getBody().readUtf8()).isEqualTo("OggS");
+        }
+        assertThat(Files.readAllLines(args)).hasSize(2).allSatisfy(line -> assertThat(line)
+                .contains("-f s16le -ar 16000 -ac 1 -i pipe:0 -c:a libopus -b:a 16000")
+                .endsWith("-f ogg pipe:1"));
+    }
+
+    @Test
+    void recognizesStereoChannelsConcurrently() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                short first = request.getBody().readByteString().asByteBuffer().order(ByteOrder.LITTLE_ENDIAN).getShort(0);
+                return new MockResponse().setResponseCode(200)
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .setBody("{\"result\":\"" + (first == 1000 ? "agent" : "customer") + "\"}")
+                        .setBodyDelay(500, TimeUnit.MILLISECONDS);
+            }
+        });
+        ByteBuffer pcm = ByteBuffer.allocate(16000 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        while (pcm.hasRemaining()) {
+            pcm.putShort((short) 1000).putShort((short) -2000);
+        }
+        byte[] wav = WavEncoder.fromPcmS16Le(pcm.array(), 16000, 2);
+        AsrService service = service(fakeFfmpeg("exit 1"));
+
+        long started = System.nanoTime();
+        List<String> texts = service.transcribeChannels(AudioUpload.of(wav), "call.wav", "ru-RU");
+
+        assertThat(texts).containsExactly("agent", "customer");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(900);
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest request = server.takeRequest(2, TimeUnit.SECONDS);
+            assertThat(request.getPath()).contains("format=lpcm").contains("sampleRateHertz=16000");
+            assertThat(request.getBodySize()).isEqualTo(16000 * 2);
+        }
+    }
+
+    @Test
+    void splitsNonWavChannelsWithFfmpegPanAndCachesEachChannel() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200)
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .setBody("{\"result\":\"" + request.getBody().readUtf8() + "\"}");
+            }
+        });
+        Path args = tempDir.resolve("args");
+        AsrService service = service(fakeFfmpeg("echo \"$@\" >> " + args
+                + "; case \"$*\" in *c0=c0*) printf 'left' ;; *) printf 'right' ;; esac"));
+        byte[] mp3 = new byte[128_000 / 8 * 4];
+        mp3[0] = (byte) 0xFF;
+        mp3[1] = (byte) 0xFB;
+        mp3[2] = (byte) 0x90;
+        mp3[3] = (byte) 0x44;
+
+        assertThat(service.transcribeChannels(AudioUpload.of(mp3), "call.mp3", "ru-RU")).containsExactly("left", "right");
+        assertThat(service.transcribeChannels(AudioUpload.of(mp3.clone()), "call.mp3", "ru-RU")).containsExactly("left", "right");
+
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(Files.readAllLines(args)).hasSize(2)
+                .anySatisfy(line -> assertThat(line).contains("-i pipe:0 -af pan=mono|c0=c0 -ac 1 -ar 16000"))
+                .anySatisfy(line -> assertThat(line).contains("-i pipe:0 -af pan=mono|c0=c1 -ac 1 -ar 16000"));
+    }
+
+    @Test
+    void rejectsSplittingNonWavChannelsWithoutNormalization() throws Exception {
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        byte[] ogg = AudioFormatSnifferTest.oggOpus(312, 312 + 48000L, 10_000);
+        ogg[37] = 2;
+
+        assertThatThrownBy(() -> service(properties).transcribeChannels(AudioUpload.of(ogg), "call.ogg", "ru-RU"))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getParam()).isEqualTo("split_channels"));
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    @Test
+    void rejectsAudioOverMaxDurationBeforeConversion() throws Exception {
+        Path marker = tempDir.resolve("ffmpeg-ran");
+        SpeechKitProperties properties = normalizingProperties(fakeFfmpeg("touch " + marker + "; exec cat"));
+        properties.setAsrMaxDuration(Duration.ofMinutes(1));
+        byte[] ogg = AudioFormatSnifferTest.oggOpus(312, 312 + 48000L * 120, 40_000);
+
+        assertThatThrownBy(() -> service(properties).transcribe(new MockMultipartFile("file", "a.ogg", "audio/ogg", ogg), "ru-RU"))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> {
+                    ApiException api = (ApiException) ex;
+                    assertThat(api.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(api.getCode()).isEqualTo("audio_too_long");
+                });
+        assertThat(marker).doesNotExist();
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    @Test
+    void feedsFfmpegOnlyTheStartOfAudioOverMaxDuration() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"ok text\"}"));
+        Path received = tempDir.resolve("received");
+        SpeechKitProperties properties = normalizingProperties(fakeFfmpeg("wc -c > " + received + "; printf 'pcm'"));
+        properties.getAsrNormalize().setMaxDurationSeconds(10);
+        byte[] mp3 = new byte[128_000 / 8 * 60];
+        mp3[0] = (byte) 0xFF;
+        mp3[1] = (byte) 0xFB;
+        mp3[2] = (byte) 0x90;
+        mp3[3] = (byte) 0x44;
+
+        assertThat(service(properties).transcribe(new MockMultipartFile("file", "a.mp3", "audio/mpeg", mp3), "ru-RU"))
+                .isEqualTo("ok text");
+        assertThat(Files.readString(received).trim()).isEqualTo(String.valueOf(128_000 / 8 * 12));
+    }
+
+    @Test
+    void servesRepeatedUploadFromCachePerLanguage() throws Exception {
+        for (String text : new String[]{"first", "second"}) {
+            server.enqueue(new MockResponse().setResponseCode(200)
+                    .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .setBody("{\"result\":\"" + text + "\"}"));
+        }
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        AsrService service = service(properties);
+        byte[] audio = {1, 2, 3, 4};
+
+        assertThat(service.transcribe(new MockMultipartFile("file", "a.ogg", "audio/ogg", audio), "ru-RU")).isEqualTo("first");
+        assertThat(service.transcribe(new MockMultipartFile("file", "b.ogg", "audio/ogg", audio.clone()), "ru-RU")).isEqualTo("first");
+        assertThat(service.transcribe(new MockMultipartFile("file", "a.ogg", "audio/ogg", audio), "en-US")).isEqualTo("second");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    private AsrService service(Path ffmpeg) {
+        return service(normalizingProperties(ffmpeg));
+    }
+
+    private SpeechKitProperties normalizingProperties(Path ffmpeg) {
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        properties.getAsrNormalize().setEnabled(true);
+        properties.getAsrNormalize().setMode(SpeechKitProperties.NormalizeMode.PIPE);
+        properties.getAsrNormalize().setFfmpegPath(ffmpeg.toString());
+        properties.getAsrNormalize().setTempDir(tempDir.toString());
+        return properties;
+    }
+
+    private AsrService service(SpeechKitProperties properties) {
+        RestClient restClient = RestClient.builder().baseUrl(server.url("/").toString()).build();
+        SpeechKitClient client = new SpeechKitClient(restClient, restClient, properties, new TokenProvider() {
+            @Override
+            public String getToken() {
+                return "iam-token";
+            }
+
+            @Override
+            public void forceRefresh() {
+            }
+        });
+        return new AsrService(client, properties);
+    }
+
+    private Path fakeFfmpeg(String script) throws Exception {
+        Path path = tempDir.resolve("ffmpeg");
+        Files.writeString(path, "#!/bin/sh\n" + script + "\n");
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwx------"));
+        return path;
+    }
+
+    private static final class SpooledPart implements Part {
+
+        private final Path location;
+        private final String filename;
+        private final List<String> writes = new ArrayList<>();
+
+        private SpooledPart(Path location, String filename) {
+            this.location = location;
+            this.filename = filename;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(location);
+        }
+
+        @Override
+        public String getContentType() {
+            return "audio/mp4";
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getSubmittedFileName() {
+            return filename;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(location);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void write(String fileName) throws IOException {
+            writes.add(fileName);
+            Files.move(location, Path.of(fileName), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        public void delete() throws IOException {
+            Files.deleteIfExists(location);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.CONTENT_DISPOSITION.equalsIgnoreCase(name)) {
+                return "form-data; name=\"file\"; filename=\"" + filename + "\"";
+            }
+            return HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name) ? getContentType() : null;
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name) {
+            String value = getHeader(name);
+            return value == null ? List.of() : List.of(value);
+        }
+
+        @Override
+        public Collection<String> getHeaderNames() {
+            return List.of(HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.CONTENT_TYPE);
+        }
+    }
+}
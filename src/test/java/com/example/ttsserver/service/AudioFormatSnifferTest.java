@@ -0,0 +1,106 @@
+package com.example.ttsserver.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AudioFormatSnifferTest {
+
+    @Test
+    void readsOpusDurationFromLastGranulePosition() throws Exception {
+        byte[] ogg = oggOpus(312, 312 + 48000 * 3, 100_000);
+
+        AudioFormatSniffer.Result result = sniff(ogg);
+
+        assertThat(result.container()).isEqualTo(AudioFormatSniffer.Container.OGG_OPUS);
+        assertThat(result.nativeFormat()).isEqualTo("oggopus");
+        assertThat(result.durationMillis()).isEqualTo(3000);
+        assertThat(result.channels()).isEqualTo(1);
+    }
+
+    @Test
+    void recognizesNativePcm16WavOnlyForSupportedMonoRates() throws Exception {
+        byte[] mono = WavEncoder.fromPcmS16Le(new byte[16000 * 2 * 2], 16000, 1);
+        byte[] stereo = WavEncoder.fromPcmS16Le(new byte[44100 * 4], 44100, 2);
+
+        AudioFormatSniffer.Result native16 = sniff(mono);
+        AudioFormatSniffer.Result converted = sniff(stereo);
+
+        assertThat(native16.nativeFormat()).isEqualTo("lpcm");
+        assertThat(native16.sampleRateHertz()).isEqualTo(16000);
+        assertThat(native16.durationMillis()).isEqualTo(2000);
+        assertThat(converted.container()).isEqualTo(AudioFormatSniffer.Container.WAV);
+        assertThat(converted.isNative()).isFalse();
+        assertThat(converted.durationMillis()).isEqualTo(1000);
+        assertThat(converted.channels()).isEqualTo(2);
+    }
+
+    @Test
+    void estimatesMp3DurationFromXingFrameCountOrConstantBitrate() throws Exception {
+        ByteBuffer xing = ByteBuffer.allocate(4096);
+        xing.put("ID3".getBytes()).put(new byte[]{4, 0, 0, 0, 0, 0, 10}).put(new byte[10]);
+        xing.put(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0xC4}).put(new byte[17]);
+        xing.put("Xing".getBytes()).putInt(1).putInt(1000);
+        byte[] cbr = new byte[128_000 / 8 * 4];
+        cbr[0] = (byte) 0xFF;
+        cbr[1] = (byte) 0xFB;
+        cbr[2] = (byte) 0x90;
+        cbr[3] = (byte) 0x44;
+
+        assertThat(sniff(xing.array()).durationMillis()).isEqualTo(1000L * 1152 * 1000 / 44100);
+        assertThat(sniff(cbr).container()).isEqualTo(AudioFormatSniffer.Container.MP3);
+        assertThat(sniff(cbr).durationMillis()).isEqualTo(4000);
+        assertThat(sniff(xing.array()).channels()).isEqualTo(1);
+        assertThat(sniff(cbr).channels()).isEqualTo(2);
+    }
+
+    @Test
+    void estimatesDurationFromVbriVorbisAndFlacHeaders() throws Exception {
+        ByteBuffer vbri = ByteBuffer.allocate(1024);
+        vbri.put(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0x44}).put(new byte[32]);
+        vbri.put("VBRI".getBytes()).putShort((short) 1).putShort((short) 0).putShort((short) 0).putInt(0).putInt(500);
+        ByteBuffer vorbis = ByteBuffer.wrap(oggOpus(0, 44100 * 7, 10_000)).order(ByteOrder.LITTLE_ENDIAN);
+        vorbis.position(28);
+        vorbis.put((byte) 1).put("vorbis".getBytes()).putInt(0).put((byte) 2).putInt(44100);
+        ByteBuffer flac = ByteBuffer.allocate(64);
+        flac.put("fLaC".getBytes()).put((byte) 0x80).put(new byte[]{0, 0, 34}).put(new byte[10]);
+        flac.put(new byte[]{0x03, (byte) 0xE8, 0x00}).put(new byte[]{0, 0, 0x01, (byte) 0xF4, 0x00});
+
+        assertThat(sniff(vbri.array()).durationMillis()).isEqualTo(500L * 1152 * 1000 / 44100);
+        assertThat(sniff(vorbis.array()).container()).isEqualTo(AudioFormatSniffer.Container.OGG);
+        assertThat(sniff(vorbis.array()).durationMillis()).isEqualTo(7000);
+        assertThat(sniff(flac.array()).durationMillis()).isEqualTo(8000);
+        assertThat(sniff(vorbis.array()).channels()).isEqualTo(2);
+        assertThat(sniff(flac.array()).channels()).isEqualTo(1);
+    }
+
+    @Test
+    void identifiesContainersThatNeedConversion() throws Exception {
+        assertThat(sniff("fLaC\0\0\0\"".getBytes()).container()).isEqualTo(AudioFormatSniffer.Container.FLAC);
+        assertThat(sniff("fLaC\0\0\0\"".getBytes()).hasDuration()).isFalse();
+        assertThat(sniff("\0\0\0\u0018ftypM4A ".getBytes()).container()).isEqualTo(AudioFormatSniffer.Container.MP4);
+        assertThat(sniff(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, 0}).container()).isEqualTo(AudioFormatSniffer.Container.WEBM);
+        assertThat(sniff(new byte[]{1, 2, 3, 4}).container()).isEqualTo(AudioFormatSniffer.Container.UNKNOWN);
+        assertThat(sniff(new byte[]{1, 2, 3, 4}).isNative()).isFalse();
+    }
+
+    private static AudioFormatSniffer.Result sniff(byte[] bytes) throws Exception {
+        AudioUpload upload = AudioUpload.of(bytes);
+        return AudioFormatSniffer.sniff(upload, upload.readPrefix(AudioFormatSniffer.PREFIX_BYTES));
+    }
+
+    static byte[] oggOpus(int preSkip, long lastGranule, int totalBytes) {
+        ByteBuffer ogg = ByteBuffer.allocate(totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+        ogg.put("OggS".getBytes()).put((byte) 0).put((byte) 2).putLong(0).putInt(1).putInt(0).putInt(0);
+        ogg.put((byte) 1).put((byte) 19);
+        ogg.put("OpusHead".getBytes()).put((byte) 1).put((byte) 1).putShort((short) preSkip).putInt(48000)
+                .putShort((short) 0).put((byte) 0);
+        ogg.position(totalBytes - 31);
+        ogg.put("OggS".getBytes()).put((byte) 0).put((byte) 4).putLong(lastGranule).putInt(1).putInt(2).putInt(0);
+        ogg.put((byte) 1).put((byte) 3).put(new byte[]{1, 2, 3});
+        return ogg.array();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.ttsserver.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AudioUploadTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void multipartUploadStaysReadableAfterSpoolingUntilClosed() throws Exception {
+        byte[] audio = "spooled audio".getBytes();
+        AudioUpload.MultipartUpload upload = AudioUpload.of(new MockMultipartFile("file", "a.ogg", "audio/ogg", audio));
+
+        Path spooled = upload.asFile(tempDir);
+
+        assertThat(spooled.getParent()).isEqualTo(tempDir);
+        assertThat(spooled).hasBinaryContent(audio);
+        assertThat(upload.asFile(tempDir)).isEqualTo(spooled);
+        try (InputStream input = upload.openStream()) {
+            assertThat(input.readAllBytes()).isEqualTo(audio);
+        }
+        upload.close();
+        assertThat(spooled).doesNotExist();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClient;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkedRecognizerTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void splitsIntoOverlappingFrameAlignedWindows() {
+        assertThat(ChunkedRecognizer.windows(100, 40, 11, 2, List.of())).containsExactly(
+                new ChunkedRecognizer.Window(0, 40),
+                new ChunkedRecognizer.Window(30, 40),
+                new ChunkedRecognizer.Window(60, 40)
+        );
+        assertThat(ChunkedRecognizer.windows(30, 40, 10, 2, List.of())).containsExactly(new ChunkedRecognizer.Window(0, 30));
+    }
+
+    @Test
+    void prefersPausesOverOverlapWhenSplitting() {
+        assertThat(ChunkedRecognizer.windows(100, 40, 10, 2, List.of(10L, 34L, 38L, 50L))).containsExactly(
+                new ChunkedRecognizer.Window(0, 38),
+                new ChunkedRecognizer.Window(38, 40),
+                new ChunkedRecognizer.Window(68, 32)
+        );
+    }
+
+    @Test
+    void capsWindowsAtSyncRequestSizeForHighRatesAndChannels() {
+        SpeechKitProperties.LongAudioProperties properties = new SpeechKitProperties().getAsrLongAudio();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofSeconds(25));
+        properties.setOverlap(Duration.ofSeconds(1));
+        List<Long> sizes = new CopyOnWriteArrayList<>();
+        ChunkedRecognizer recognizer = new ChunkedRecognizer((pcm, sampleRateHertz, channels, filename, language) -> {
+            sizes.add(pcm.size());
+            return "";
+        }, properties);
+        int sampleRate = 48000;
+
+        assertThat(recognizer.shouldSplit(20L * sampleRate * 2, sampleRate, 1)).isTrue();
+        assertThat(recognizer.shouldSplit(20L * 16000 * 4, 16000, 2)).isTrue();
+        assertThat(recognizer.shouldSplit(SpeechKitClient.SYNC_MAX_BYTES, sampleRate, 1)).isFalse();
+        recognizer.recognize(AudioUpload.of(new byte[60 * sampleRate * 2]), sampleRate, 1, "long.wav", "ru-RU");
+
+        assertThat(sizes).hasSize(6).allSatisfy(size -> assertThat(size).isLessThanOrEqualTo(SpeechKitClient.SYNC_MAX_BYTES));
+    }
+
+    @Test
+    void stitchesTranscriptsDroppingOverlappingWords() {
+        List<ChunkedRecognizer.Window> overlapping = List.of(
+                new ChunkedRecognizer.Window(0, 40),
+                new ChunkedRecognizer.Window(30, 40),
+                new ChunkedRecognizer.Window(60, 40),
+                new ChunkedRecognizer.Window(90, 40)
+        );
+        assertThat(ChunkedRecognizer.stitch(List.of("привет как дела", "Дела, хорошо", "", "спасибо"), overlapping, 8))
+                .isEqualTo("привет как дела хорошо спасибо");
+        assertThat(ChunkedRecognizer.stitch(List.of("one two", "two three"), overlapping, 0)).isEqualTo("one two two three");
+        List<ChunkedRecognizer.Window> adjacent = List.of(new ChunkedRecognizer.Window(0, 40), new ChunkedRecognizer.Window(40, 40));
+        assertThat(ChunkedRecognizer.stitch(List.of("да да", "да"), adjacent, 8)).isEqualTo("да да да");
+    }
+
+    @Test
+    void recognizesWindowsConcurrentlyAndJoinsThemInOrder() throws Exception {
+        Map<Short, String> transcripts = Map.of(
+                (short) 0, "a b c",
+                (short) 24, "c d e",
+                (short) 48, "e f"
+        );
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                short firstSecond = request.getBody().readByteString().asByteBuffer().order(ByteOrder.LITTLE_ENDIAN).getShort(0);
+                return new MockResponse().setResponseCode(200)
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .setBody("{\"result\":\"" + transcripts.get(firstSecond) + "\"}")
+                        .setBodyDelay(500, TimeUnit.MILLISECONDS);
+            }
+        });
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        properties.getAsrLongAudio().setParallelism(3);
+        properties.getAsrLongAudio().setWindow(Duration.ofSeconds(25));
+        properties.getAsrLongAudio().setOverlap(Duration.ofSeconds(1));
+        RestClient restClient = RestClient.builder().baseUrl(server.url("/").toString()).build();
+        SpeechKitClient client = new SpeechKitClient(restClient, restClient, properties, new TokenProvider() {
+            @Override
+            public String getToken() {
+                return "iam-token";
+            }
+
+            @Override
+            public void forceRefresh() {
+            }
+        });
+        ChunkedRecognizer recognizer = new ChunkedRecognizer(client, properties.getAsrLongAudio());
+        int sampleRate = 8000;
+        ByteBuffer pcm = ByteBuffer.allocate(60 * sampleRate * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int second = 0; second < 60; second++) {
+            for (int i = 0; i < sampleRate; i++) {
+                pcm.putShort((short) second);
+            }
+        }
+
+        assertThat(recognizer.shouldSplit(pcm.capacity(), sampleRate, 1)).isTrue();
+        long started = System.nanoTime();
+        String text = recognizer.recognize(AudioUpload.of(pcm.array()), sampleRate, 1, "long.wav", "ru-RU");
+
+        assertThat(text).isEqualTo("a b c d e f");
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(1400);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ttsserver.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EncryptedFileIamTokenStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsEncryptedTokenWithoutLeavingTempFiles() throws Exception {
+        EncryptedFileIamTokenStore store = new EncryptedFileIamTokenStore(directory, "secret");
+        Instant expiresAt = Instant.parse("2030-01-01T00:00:00Z");
+
+        store.save("sa:sa-id:key-id", new IamTokenStore.StoredToken("t1.secret-token", expiresAt));
+
+        assertThat(store.load("sa:sa-id:key-id"))
+                .contains(new IamTokenStore.StoredToken("t1.secret-token", expiresAt));
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.toList();
+        }
+        assertThat(files).hasSize(1);
+        assertThat(files.get(0).getFileName().toString()).endsWith(".token");
+        assertThat(new String(Files.readAllBytes(files.get(0)), StandardCharsets.ISO_8859_1)).doesNotContain("secret-token");
+    }
+
+    @Test
+    void ignoresTokenEncryptedWithDifferentKeyOrForDifferentAccount() {
+        new EncryptedFileIamTokenStore(directory, "secret")
+                .save("sa:sa-id:key-id", new IamTokenStore.StoredToken("token", Instant.parse("2030-01-01T00:00:00Z")));
+
+        assertThat(new EncryptedFileIamTokenStore(directory, "other-secret").load("sa:sa-id:key-id")).isEmpty();
+        assertThat(new EncryptedFileIamTokenStore(directory, "secret").load("sa:sa-id:other-key")).isEmpty();
+    }
+}
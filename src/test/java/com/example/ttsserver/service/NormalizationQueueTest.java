@@ -0,0 +1,59 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NormalizationQueueTest {
+
+    @Test
+    void rejectsWhenQueueIsFullAndWhenWaitTimesOut() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        NormalizationQueue queue = new NormalizationQueue(1, 1, Duration.ofMillis(300), registry);
+        NormalizationQueue.Permit held = queue.acquire(RequestDeadline.current());
+
+        CountDownLatch waiterQueued = new CountDownLatch(1);
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            waiterQueued.countDown();
+            assertThatThrownBy(() -> queue.acquire(RequestDeadline.current()))
+                    .satisfies(ex -> assertRateLimited((ApiException) ex));
+        });
+        waiterQueued.await();
+        while (queue.waiting() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> queue.acquire(RequestDeadline.current()))
+                .satisfies(ex -> assertRateLimited((ApiException) ex));
+        waiter.join(TimeUnit.SECONDS.toMillis(2));
+        held.close();
+
+        assertThat(registry.get("asr.normalization.rejected").tag("reason", "queue_full").counter().count()).isEqualTo(1);
+        assertThat(registry.get("asr.normalization.rejected").tag("reason", "timeout").counter().count()).isEqualTo(1);
+        assertThat(registry.get("asr.normalization.queue.wait").timer().count()).isEqualTo(2);
+        assertThat(registry.get("asr.normalization.queue.depth").gauge().value()).isZero();
+        try (NormalizationQueue.Permit ignored = queue.acquire(RequestDeadline.current())) {
+            assertThat(registry.get("asr.normalization.active").gauge().value()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void defaultsConcurrencyToAvailableProcessors() {
+        NormalizationQueue queue = new NormalizationQueue(null, 0, Duration.ZERO, new SimpleMeterRegistry());
+
+        assertThat(queue.maxProcesses()).isEqualTo(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static void assertRateLimited(ApiException ex) {
+        assertThat(ex.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(ex.getType()).isEqualTo("rate_limit_error");
+    }
+}
@@ -19,6 +19,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Base64;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -314,6 +315,107 @@ class SpeechKitClientTest {
         }
     }
 
+    @Test
+    void drainsThrottledAccountAndRoutesToRemainingAccount() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setBody("{\"message\":\"quota exceeded\"}"));
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"second\"}"));
+        server.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"third\"}"));
+
+        SpeechKitProperties properties = testProperties();
+        SpeechKitAccountPool pool = new SpeechKitAccountPool(properties, List.of(
+                new SpeechKitAccount("a", "folder-a", null, 1, new FixedTokenProvider("token-a"),
+                        new UpstreamRateLimiter(properties.getRateLimit())),
+                new SpeechKitAccount("b", "folder-b", null, 1, new FixedTokenProvider("token-b"),
+                        new UpstreamRateLimiter(properties.getRateLimit()))
+        ), System::nanoTime);
+
+        SpeechKitClient client = new SpeechKitClient(
+                RestClient.builder().baseUrl(server.url("/").toString()).build(),
+                RestClient.builder().baseUrl(server.url("/").toString()).build(),
+                properties,
+                pool
+        );
+
+        assertThatThrownBy(() -> client.recognize("abc".getBytes(), "a.ogg", "ru-RU", "oggopus", null))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        assertThat(client.recognize("abc".getBytes(), "a.ogg", "ru-RU", "oggopus", null)).isEqualTo("second");
+        assertThat(client.recognize("abc".getBytes(), "a.ogg", "ru-RU", "oggopus", null)).isEqualTo("third");
+
+        RecordedRequest throttled = server.takeRequest(2, TimeUnit.SECONDS);
+        RecordedRequest second = server.takeRequest(2, TimeUnit.SECONDS);
+        RecordedRequest third = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(throttled.getHeader(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer token-a");
+        assertThat(queryParams(URI.create("http://localhost" + throttled.getPath()).getRawQuery()))
+                .containsEntry("folderId", "folder-a");
+        for (RecordedRequest request : List.of(second, third)) {
+            assertThat(request.getHeader(HttpHeaders.AUTHORIZATION)).isEqualTo("Bearer token-b");
+            assertThat(queryParams(URI.create("http://localhost" + request.getPath()).getRawQuery()))
+                    .containsEntry("folderId", "folder-b");
+        }
+    }
+
+    @Test
+    void routesRecognitionAwayFromFailingEndpoint() throws Exception {
+        MockWebServer broken = new MockWebServer();
+        broken.start();
+        try {
+            broken.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable"));
+            for (int i = 0; i < 4; i++) {
+                server.enqueue(new MockResponse().setResponseCode(200)
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .setBody("{\"result\":\"ok\"}"));
+            }
+
+            SpeechKitProperties properties = testProperties();
+            properties.setSttBaseUrls(List.of(server.url("/").toString(), broken.url("/").toString()));
+            SpeechKitClient client = new SpeechKitClient(
+                    RestClient.builder().build(),
+                    RestClient.builder().build(),
+                    properties,
+                    new FixedTokenProvider("iam-token")
+            );
+
+            int succeeded = 0;
+            for (int i = 0; i < 4; i++) {
+                try {
+                    assertThat(client.recognize("abc".getBytes(), "a.ogg", "ru-RU", "oggopus", null)).isEqualTo("ok");
+                    succeeded++;
+                } catch (ApiException ex) {
+                    assertThat(ex.getStatus()).isEqualTo(HttpStatus.BAD_GATEWAY);
+                }
+            }
+
+            assertThat(broken.getRequestCount()).isEqualTo(1);
+            assertThat(succeeded).isEqualTo(3);
+            assertThat(server.takeRequest(2, TimeUnit.SECONDS).getPath()).startsWith("/speech/v1/stt:recognize?");
+        } finally {
+            broken.shutdown();
+        }
+    }
+
+    @Test
+    void warmUpOpensConnectionsWithoutCallingSynthesis() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("not found"));
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("not found"));
+
+        SpeechKitClient client = new SpeechKitClient(
+                RestClient.builder().baseUrl(server.url("/").toString()).build(),
+                RestClient.builder().baseUrl(server.url("/").toString()).build(),
+                testProperties(),
+                new FixedTokenProvider("iam-token")
+        );
+
+        assertThat(client.warmUpConnections(1)).isEqualTo(2);
+        assertThat(client.warmUpCodecs(10)).isPositive();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(server.takeRequest(2, TimeUnit.SECONDS).getMethod()).isEqualTo("GET");
+    }
+
     private SpeechKitProperties testProperties() {
         SpeechKitProperties p = new SpeechKitProperties();
         p.setAuthMode(SpeechKitProperties.AuthMode.IAM);
@@ -0,0 +1,166 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpeechKitStreamingRecognizerTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void endpointsUtterancesOnSilenceAndDeliversFinalsInOrder() throws Exception {
+        server.enqueue(recognized("привет").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(recognized("мир"));
+        SpeechKitProperties properties = properties();
+        properties.getAsrStreaming().setPartialInterval(Duration.ZERO);
+        RecordingListener listener = new RecordingListener();
+        StreamingRecognizer.Session session = new SpeechKitStreamingRecognizer(client(properties), properties)
+                .start("ru-RU", SAMPLE_RATE, listener);
+
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        silence(pcm, 1.0);
+        tone(pcm, 1.0);
+        silence(pcm, 1.0);
+        tone(pcm, 0.5);
+        byte[] audio = pcm.toByteArray();
+        for (int offset = 0; offset < audio.length; offset += 999) {
+            session.accept(audio, offset, Math.min(999, audio.length - offset));
+        }
+        session.finish();
+
+        assertThat(listener.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.events).containsExactly("final 0 привет", "final 1 мир", "complete");
+        RecordedRequest first = server.takeRequest();
+        assertThat(first.getRequestUrl().queryParameter("format")).isEqualTo("lpcm");
+        assertThat(first.getRequestUrl().queryParameter("sampleRateHertz")).isEqualTo("16000");
+        long preRollAndTone = seconds(0.3) + seconds(1.0);
+        assertThat(first.getBodySize()).isBetween(preRollAndTone, preRollAndTone + seconds(0.9));
+        assertThat(server.takeRequest().getBodySize()).isBetween(seconds(0.5), seconds(0.8));
+        session.close();
+    }
+
+    @Test
+    void emitsPartialsWhileSpeechContinuesAndReportsUpstreamErrors() throws Exception {
+        server.enqueue(recognized("раз"));
+        server.enqueue(new MockResponse().setResponseCode(400)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"error_code\":\"BAD_REQUEST\",\"error_message\":\"bad audio\"}"));
+        SpeechKitProperties properties = properties();
+        properties.getAsrStreaming().setPartialInterval(Duration.ofMillis(500));
+        RecordingListener listener = new RecordingListener();
+        StreamingRecognizer.Session session = new SpeechKitStreamingRecognizer(client(properties), properties)
+                .start("ru-RU", SAMPLE_RATE, listener);
+
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        tone(pcm, 0.7);
+        byte[] audio = pcm.toByteArray();
+        session.accept(audio, 0, audio.length);
+        session.finish();
+
+        assertThat(listener.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.events).hasSize(3);
+        assertThat(listener.events.get(0)).isEqualTo("partial 0 раз");
+        assertThat(listener.events.get(1)).startsWith("error ");
+        assertThat(listener.events.get(2)).isEqualTo("complete");
+        session.close();
+    }
+
+    private SpeechKitProperties properties() {
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        return properties;
+    }
+
+    private SpeechKitClient client(SpeechKitProperties properties) {
+        RestClient restClient = RestClient.builder().baseUrl(server.url("/").toString()).build();
+        return new SpeechKitClient(restClient, restClient, properties, new TokenProvider() {
+            @Override
+            public String getToken() {
+                return "iam-token";
+            }
+
+            @Override
+            public void forceRefresh() {
+            }
+        });
+    }
+
+    private static MockResponse recognized(String text) {
+        return new MockResponse().setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .setBody("{\"result\":\"" + text + "\"}");
+    }
+
+    private static long seconds(double seconds) {
+        return Math.round(seconds * SAMPLE_RATE) * 2;
+    }
+
+    private static void silence(ByteArrayOutputStream output, double seconds) {
+        output.writeBytes(new byte[(int) seconds(seconds)]);
+    }
+
+    private static void tone(ByteArrayOutputStream output, double seconds) {
+        for (long i = 0; i < seconds(seconds) / 2; i++) {
+            int sample = (int) Math.round(8000 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+            output.write(sample & 0xFF);
+            output.write((sample >> 8) & 0xFF);
+        }
+    }
+
+    private static final class RecordingListener implements StreamingRecognizer.Listener {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onPartial(int utterance, String text) {
+            events.add("partial " + utterance + " " + text);
+        }
+
+        @Override
+        public void onFinal(int utterance, String text) {
+            events.add("final " + utterance + " " + text);
+        }
+
+        @Override
+        public void onError(ApiException error) {
+            events.add("error " + error.getCode());
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("complete");
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ttsserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TranscriptionCacheTest {
+
+    @Test
+    void coalescesConcurrentIdenticalRequestsAndServesLaterOnesFromCache() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TranscriptionCache cache = new TranscriptionCache(10, Duration.ofHours(1), registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TranscriptionCache.Loader slowLoader = () -> {
+            loads.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "text";
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> first = executor.submit(() -> cache.get("key", slowLoader));
+            Future<String> second = executor.submit(() -> cache.get("key", slowLoader));
+            while (registry.get("asr.cache.requests").tag("result", "coalesced").counter().count() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("text");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("text");
+        }
+        assertThat(cache.get("key", () -> "other")).isEqualTo("text");
+        assertThat(loads).hasValue(1);
+        assertThat(registry.get("asr.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("asr.cache.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndDoesNotCacheFailures() throws Exception {
+        TranscriptionCache cache = new TranscriptionCache(2, Duration.ZERO, new SimpleMeterRegistry());
+        cache.get("a", () -> "A");
+        cache.get("b", () -> "B");
+        cache.get("a", () -> "A2");
+        cache.get("c", () -> "C");
+
+        assertThat(cache.get("a", () -> "A3")).isEqualTo("A");
+        assertThat(cache.get("b", () -> "B2")).isEqualTo("B2");
+        assertThat(cache.size()).isEqualTo(2);
+
+        assertThatThrownBy(() -> cache.get("d", () -> {
+            throw new IOException("boom");
+        })).isInstanceOf(IOException.class);
+        assertThat(cache.get("d", () -> "D")).isEqualTo("D");
+    }
+
+    @Test
+    void hashesStreamedUpload() throws Exception {
+        assertThat(TranscriptionCache.sha256(AudioUpload.of("abc".getBytes())))
+                .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.client.RestClient;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TranscriptionJobServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private MockWebServer server;
+    private TranscriptionJobService jobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/callback")) {
+                    return new MockResponse().setResponseCode(204);
+                }
+                return new MockResponse().setResponseCode(200)
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .setBody("{\"result\":\"job text\"}")
+                        .setBodyDelay(300, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (jobService != null) {
+            jobService.shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    void runsSpooledJobAndPostsResultToCallback() throws Exception {
+        SpeechKitProperties properties = properties();
+        properties.getAsrJobs().setCallbackAllowedHosts(List.of(server.getHostName()));
+        jobService = jobService(properties, address -> true);
+
+        TranscriptionJob job = jobService.submit(upload(), "ru-RU", URI.create(server.url("/callback").toString()));
+
+        assertThat(job.status()).isEqualTo(TranscriptionJob.Status.QUEUED);
+        TranscriptionJob finished = awaitFinished(job.id());
+        assertThat(finished.status()).isEqualTo(TranscriptionJob.Status.SUCCEEDED);
+        assertThat(finished.text()).isEqualTo("job text");
+        RecordedRequest recognize = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(recognize.getPath()).contains("lang=ru-RU");
+        assertThat(recognize.getBody().readByteArray()).isEqualTo(new byte[]{1, 2, 3, 4});
+        RecordedRequest callback = server.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(callback.getPath()).isEqualTo("/callback");
+        assertThat(callback.getBody().readUtf8())
+                .contains("\"id\":\"" + job.id() + "\"")
+                .contains("\"status\":\"succeeded\"")
+                .contains("\"text\":\"job text\"");
+        try (var files = Files.list(spoolDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsWhenQueueIsFullAndDropsFinishedJobsAfterRetention() throws Exception {
+        SpeechKitProperties properties = properties();
+        properties.getAsrJobs().setWorkers(1);
+        properties.getAsrJobs().setMaxQueued(0);
+        jobService = jobService(properties);
+
+        TranscriptionJob running = jobService.submit(upload(), null, null);
+
+        assertThatThrownBy(() -> jobService.submit(upload(), null, null))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        assertThat(awaitFinished(running.id()).status()).isEqualTo(TranscriptionJob.Status.SUCCEEDED);
+
+        jobService.removeExpired();
+        assertThat(jobService.find(running.id())).isPresent();
+        properties.getAsrJobs().setRetention(Duration.ZERO);
+        Thread.sleep(5);
+        jobService.removeExpired();
+        assertThat(jobService.find(running.id())).isEmpty();
+    }
+
+    @Test
+    void rejectsCallbacksOutsideAllowlistOrToPrivateAddresses() {
+        SpeechKitProperties properties = properties();
+        jobService = jobService(properties);
+
+        assertCallbackRejected("https://example.com/done", "disabled");
+        properties.getAsrJobs().setCallbackAllowedHosts(List.of(".example.com", server.getHostName(), "169.254.169.254", "10.0.0.5"));
+        assertCallbackRejected("https://evil.example.org/done", "not allowed");
+        assertCallbackRejected(server.url("/callback").toString(), "loopback, link-local or private");
+        assertCallbackRejected("http://169.254.169.254/computeMetadata/v1/instance/service-accounts/default/token", "loopback, link-local or private");
+        assertCallbackRejected("http://10.0.0.5/done", "loopback, link-local or private");
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    private void assertCallbackRejected(String callbackUrl, String message) {
+        assertThatThrownBy(() -> jobService.submit(upload(), null, URI.create(callbackUrl)))
+                .isInstanceOf(ApiException.class)
+                .hasMessageContaining(message)
+                .satisfies(ex -> {
+                    ApiException api = (ApiException) ex;
+                    assertThat(api.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(api.getParam()).isEqualTo("callback_url");
+                });
+    }
+
+    private TranscriptionJob awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            TranscriptionJob job = jobService.find(id).orElseThrow();
+            if (job.isFinished()) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Job did not finish: " + id);
+    }
+
+    private MockMultipartFile upload() {
+        return new MockMultipartFile("file", "a.ogg", "audio/ogg", new byte[]{1, 2, 3, 4});
+    }
+
+    private SpeechKitProperties properties() {
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setFolderId("folder");
+        properties.getAsrJobs().setSpoolDir(spoolDir.toString());
+        return properties;
+    }
+
+    private TranscriptionJobService jobService(SpeechKitProperties properties) {
+        return jobService(properties, TranscriptionJobService::isPublicAddress);
+    }
+
+    private TranscriptionJobService jobService(SpeechKitProperties properties, Predicate<InetAddress> callbackAddressAllowed) {
+        RestClient restClient = RestClient.builder().baseUrl(server.url("/").toString()).build();
+        SpeechKitClient client = new SpeechKitClient(restClient, restClient, properties, new TokenProvider() {
+            @Override
+            public String getToken() {
+                return "iam-token";
+            }
+
+            @Override
+            public void forceRefresh() {
+            }
+        });
+        return new TranscriptionJobService(
+                new AsrService(client, properties), properties, RestClient.create(), new SimpleMeterRegistry(), callbackAddressAllowed);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamEndpointSelectorTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void prefersEndpointWithLowerObservedLatency() {
+        UpstreamEndpointSelector selector = selector();
+        UpstreamEndpointSelector.Endpoint slow = selector.endpoints().get(0);
+        UpstreamEndpointSelector.Endpoint fast = selector.endpoints().get(1);
+        observe(selector, slow, 400);
+        observe(selector, fast, 20);
+
+        for (int i = 0; i < 20; i++) {
+            UpstreamEndpointSelector.Endpoint selected = selector.select();
+            selector.release(selected);
+            assertThat(selected).isSameAs(fast);
+        }
+    }
+
+    @Test
+    void spreadsLoadWhenPreferredEndpointHasPendingRequests() {
+        UpstreamEndpointSelector selector = selector();
+        UpstreamEndpointSelector.Endpoint a = selector.endpoints().get(0);
+        UpstreamEndpointSelector.Endpoint b = selector.endpoints().get(1);
+        observe(selector, a, 50);
+        observe(selector, b, 60);
+
+        assertThat(selector.select()).isSameAs(a);
+        assertThat(selector.select()).isSameAs(b);
+    }
+
+    @Test
+    void ejectsFailingEndpointAndReprobesAfterEjectionWindow() {
+        UpstreamEndpointSelector selector = selector();
+        UpstreamEndpointSelector.Endpoint flaky = selector.endpoints().get(0);
+        UpstreamEndpointSelector.Endpoint healthy = selector.endpoints().get(1);
+        for (int i = 0; i < 3; i++) {
+            selector.recordFailure(flaky, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(flaky.isEjected()).isTrue();
+
+        for (int i = 0; i < 5; i++) {
+            UpstreamEndpointSelector.Endpoint selected = selector.select();
+            selector.release(selected);
+            assertThat(selected).isSameAs(healthy);
+        }
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        UpstreamEndpointSelector.Endpoint probe = selector.select();
+        assertThat(probe).isSameAs(flaky);
+        assertThat(selector.select()).isSameAs(healthy);
+
+        selector.recordSuccess(probe, TimeUnit.MILLISECONDS.toNanos(15));
+        assertThat(flaky.isEjected()).isFalse();
+    }
+
+    @Test
+    void singleEndpointKeepsClientBaseUrl() {
+        UpstreamEndpointSelector selector = new UpstreamEndpointSelector(
+                "tts", "https://tts.example", List.of(), new SpeechKitProperties.EndpointSelectionProperties(), clock::get);
+
+        assertThat(selector.endpoints()).hasSize(1);
+        assertThat(selector.select().label()).isEqualTo("https://tts.example");
+    }
+
+    private UpstreamEndpointSelector selector() {
+        return new UpstreamEndpointSelector(
+                "stt",
+                "https://stt.example",
+                List.of("https://a.example", "https://b.example"),
+                new SpeechKitProperties.EndpointSelectionProperties(),
+                clock::get
+        );
+    }
+
+    private void observe(UpstreamEndpointSelector selector, UpstreamEndpointSelector.Endpoint endpoint, long latencyMillis) {
+        selector.recordSuccess(endpoint, TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+}
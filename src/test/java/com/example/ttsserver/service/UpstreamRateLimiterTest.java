@@ -0,0 +1,134 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import com.example.ttsserver.error.ApiException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamRateLimiterTest {
+
+    @Test
+    void rejectsTtsRequestWhenRequestBucketIsEmptyAndWaitIsNotAllowed() {
+        SpeechKitProperties.RateLimitProperties properties = new SpeechKitProperties.RateLimitProperties();
+        properties.setTtsRequestsPerSecond(2);
+        properties.setMaxWait(Duration.ZERO);
+        AtomicLong now = new AtomicLong();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties, now::get);
+
+        limiter.acquireTts(10);
+        limiter.acquireTts(10);
+
+        assertThatThrownBy(() -> limiter.acquireTts(10))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> {
+                    ApiException api = (ApiException) ex;
+                    assertThat(api.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(api.getType()).isEqualTo("rate_limit_error");
+                    assertThat(api.getCode()).isEqualTo("rate_limit_exceeded");
+                });
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThatCode(() -> limiter.acquireTts(10)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void chargesTtsCharactersAndRefundsRequestBudgetOnRejection() {
+        SpeechKitProperties.RateLimitProperties properties = new SpeechKitProperties.RateLimitProperties();
+        properties.setTtsRequestsPerSecond(2);
+        properties.setTtsCharactersPerSecond(100);
+        properties.setMaxWait(Duration.ZERO);
+        AtomicLong now = new AtomicLong();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties, now::get);
+
+        limiter.acquireTts(80);
+
+        assertThatThrownBy(() -> limiter.acquireTts(50)).isInstanceOf(ApiException.class);
+        assertThatCode(() -> limiter.acquireTts(20)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void waitsForBudgetWithinMaxWait() {
+        SpeechKitProperties.RateLimitProperties properties = new SpeechKitProperties.RateLimitProperties();
+        properties.setSttBytesPerSecond(1000);
+        properties.setMaxWait(Duration.ofSeconds(1));
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties);
+
+        limiter.acquireStt(1000);
+        long started = System.nanoTime();
+        limiter.acquireStt(100);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(elapsedMillis).isBetween(50L, 900L);
+    }
+
+    @Test
+    void rejectsWhenWaitQueueIsFull() {
+        SpeechKitProperties.RateLimitProperties properties = new SpeechKitProperties.RateLimitProperties();
+        properties.setSttRequestsPerSecond(1);
+        properties.setMaxWait(Duration.ofSeconds(5));
+        properties.setMaxQueued(0);
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties);
+
+        limiter.acquireStt(10);
+
+        assertThatThrownBy(() -> limiter.acquireStt(10))
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getParam()).isEqualTo("transcription"));
+    }
+
+    @Test
+    void chargesUploadsLargerThanTheBurstInFull() {
+        AtomicLong now = new AtomicLong();
+        UpstreamRateLimiter.TokenBucket bucket = UpstreamRateLimiter.TokenBucket.create(1000, 1, 0, now::get);
+
+        assertThat(bucket.reserve(4000, TimeUnit.SECONDS.toNanos(2))).isEqualTo(-1);
+        assertThat(bucket.reserve(4000, TimeUnit.SECONDS.toNanos(5))).isEqualTo(TimeUnit.SECONDS.toNanos(3));
+        assertThat(bucket.reserve(1, 0)).isEqualTo(-1);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3) + TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(bucket.reserve(1, 0)).isEqualTo(0);
+    }
+
+    @Test
+    void rejectsRequestCostingMoreThanMaxRequestSeconds() {
+        SpeechKitProperties.RateLimitProperties properties = new SpeechKitProperties.RateLimitProperties();
+        properties.setSttBytesPerSecond(1000);
+        properties.setMaxRequestSeconds(2);
+        properties.setMaxWait(Duration.ofSeconds(60));
+        AtomicLong now = new AtomicLong();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties, now::get);
+
+        assertThatThrownBy(() -> limiter.acquireStt(2001)).isInstanceOf(ApiException.class);
+        assertThatCode(() -> limiter.acquireStt(1000)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void refundsReservedBudgetWhenInterruptedWhileWaiting() {
+        SpeechKitProperties.RateLimitProperties properties = new SpeechKitProperties.RateLimitProperties();
+        properties.setSttRequestsPerSecond(1000);
+        properties.setSttBytesPerSecond(1000);
+        properties.setMaxWait(Duration.ofSeconds(1));
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(properties);
+
+        limiter.acquireStt(1000);
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> limiter.acquireStt(800)).isInstanceOf(ApiException.class);
+        } finally {
+            Thread.interrupted();
+        }
+        long started = System.nanoTime();
+        limiter.acquireStt(100);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(elapsedMillis).isLessThan(500L);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.ttsserver.service;
+
+import com.example.ttsserver.config.SpeechKitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VoiceActivityDetectorTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BYTES_PER_SECOND = SAMPLE_RATE * 2;
+
+    @Test
+    void trimsEdgesCollapsesLongPausesAndReportsSavings() throws Exception {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        silence(pcm, 1.0);
+        tone(pcm, 1.0, 8000);
+        silence(pcm, 2.0);
+        tone(pcm, 0.5, 8000);
+        silence(pcm, 1.0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        VoiceActivityDetector detector = new VoiceActivityDetector(new SpeechKitProperties.VadProperties(), registry);
+
+        VoiceActivityDetector.Result result = detector.detect(AudioUpload.of(pcm.toByteArray()), SAMPLE_RATE, 1);
+
+        assertThat(result.kept()).containsExactly(
+                new VoiceActivityDetector.Segment(seconds(0.8), seconds(1.6)),
+                new VoiceActivityDetector.Segment(seconds(3.8), seconds(1.1))
+        );
+        assertThat(result.splitPoints()).containsExactly(seconds(1.6));
+        AudioUpload trimmed = result.apply(AudioUpload.of(pcm.toByteArray()));
+        assertThat(trimmed.size()).isEqualTo(seconds(2.7));
+        try (InputStream input = trimmed.openStream()) {
+            assertThat(input.readAllBytes()).hasSize((int) seconds(2.7));
+        }
+        assertThat(registry.get("asr.vad.saved.bytes").summary().totalAmount()).isEqualTo(seconds(2.8));
+        assertThat(registry.get("asr.vad.saved.seconds").summary().totalAmount()).isCloseTo(2.8, within(1e-9));
+    }
+
+    @Test
+    void keepsQuietHighFrequencyFramesAndDetectsSilence() throws Exception {
+        SpeechKitProperties.VadProperties properties = new SpeechKitProperties.VadProperties();
+        VoiceActivityDetector detector = new VoiceActivityDetector(properties, new SimpleMeterRegistry());
+        ByteArrayOutputStream fricative = new ByteArrayOutputStream();
+        for (int i = 0; i < SAMPLE_RATE; i++) {
+            writeSample(fricative, i % 2 == 0 ? 184 : -184);
+        }
+        ByteArrayOutputStream silent = new ByteArrayOutputStream();
+        silence(silent, 1.0);
+
+        assertThat(detector.detect(AudioUpload.of(fricative.toByteArray()), SAMPLE_RATE, 1).keptBytes())
+                .isEqualTo(BYTES_PER_SECOND);
+        assertThat(detector.detect(AudioUpload.of(silent.toByteArray()), SAMPLE_RATE, 1).isSilent()).isTrue();
+    }
+
+    private static long seconds(double seconds) {
+        return Math.round(seconds * SAMPLE_RATE) * 2;
+    }
+
+    private static void silence(ByteArrayOutputStream output, double seconds) {
+        for (long i = 0; i < seconds(seconds) / 2; i++) {
+            writeSample(output, 0);
+        }
+    }
+
+    private static void tone(ByteArrayOutputStream output, double seconds, int amplitude) {
+        for (long i = 0; i < seconds(seconds) / 2; i++) {
+            writeSample(output, (int) Math.round(amplitude * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE)));
+        }
+    }
+
+    private static void writeSample(ByteArrayOutputStream output, int sample) {
+        output.write(sample & 0xFF);
+        output.write((sample >> 8) & 0xFF);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.ttsserver.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WavDecoderTest {
+
+    @Test
+    void passesThroughPcm16AtTargetFormat() throws Exception {
+        byte[] pcm = new byte[3200];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (byte) (i * 7);
+        }
+        byte[] wav = WavEncoder.fromPcmS16Le(pcm, 16000, 1);
+        WavDecoder.Header header = WavDecoder.parseHeader(wav);
+
+        assertThat(header.isPcm16()).isTrue();
+        assertThat(WavDecoder.toPcm16(new ByteArrayInputStream(wav), header, 1, 16000, 0)).isEqualTo(pcm);
+    }
+
+    @Test
+    void downmixesAndResamples24BitStereo() throws Exception {
+        int frames = 4800;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < frames; i++) {
+            writeInt24(data, 4_194_304);
+            writeInt24(data, 0);
+        }
+        byte[] wav = wav(1, 2, 48000, 24, data.toByteArray());
+        WavDecoder.Header header = WavDecoder.parseHeader(wav);
+
+        byte[] pcm = WavDecoder.toPcm16(new ByteArrayInputStream(wav), header, 1, 16000, 0);
+
+        assertThat(pcm).hasSize(frames / 3 * 2);
+        short last = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).getShort(pcm.length - 2);
+        assertThat(last).isBetween((short) 8190, (short) 8194);
+    }
+
+    @Test
+    void decodesFloatAndStopsAtMaxDuration() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(8000 * 4 * 3).order(ByteOrder.LITTLE_ENDIAN);
+        while (data.hasRemaining()) {
+            data.putFloat(-0.5f);
+        }
+        byte[] wav = wav(3, 1, 8000, 32, data.array());
+        WavDecoder.Header header = WavDecoder.parseHeader(wav);
+
+        byte[] pcm = WavDecoder.toPcm16(new ByteArrayInputStream(wav), header, 1, 16000, 16000);
+
+        assertThat(pcm).hasSize(32000);
+        assertThat(ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).getShort(1000)).isEqualTo((short) -16384);
+    }
+
+    @Test
+    void decodesG711Companding() throws Exception {
+        byte[] wav = wav(7, 1, 8000, 8, new byte[]{(byte) 0xFF, 0x00});
+        byte[] alaw = wav(6, 1, 8000, 8, new byte[]{(byte) 0xD5, 0x55});
+
+        ByteBuffer mulawPcm = ByteBuffer.wrap(WavDecoder.toPcm16(new ByteArrayInputStream(wav), WavDecoder.parseHeader(wav), 1, 8000, 0))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer alawPcm = ByteBuffer.wrap(WavDecoder.toPcm16(new ByteArrayInputStream(alaw), WavDecoder.parseHeader(alaw), 1, 8000, 0))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        assertThat(mulawPcm.getShort(0)).isEqualTo((short) 0);
+        assertThat(mulawPcm.getShort(2)).isEqualTo((short) -32124);
+        assertThat(alawPcm.getShort(0)).isEqualTo((short) 8);
+        assertThat(alawPcm.getShort(2)).isEqualTo((short) -8);
+    }
+
+    @Test
+    void streamConverterMatchesWholeFileConversionForArbitraryChunks() throws Exception {
+        int frames = 4801;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < frames; i++) {
+            writeInt24(data, (int) (4_000_000 * Math.sin(i / 7.0)));
+            writeInt24(data, (int) (-2_000_000 * Math.cos(i / 3.0)));
+        }
+        byte[] wav = wav(1, 2, 48000, 24, data.toByteArray());
+        WavDecoder.Header header = WavDecoder.parseHeader(wav);
+        byte[] expected = WavDecoder.toPcm16(new ByteArrayInputStream(wav), header, 1, 16000, 0);
+
+        WavDecoder.StreamConverter converter = WavDecoder.streamConverter(header, 1, 16000);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        byte[] input = data.toByteArray();
+        int offset = 0;
+        for (int chunk = 1; offset < input.length; chunk = chunk * 3 % 1001 + 1) {
+            int length = Math.min(chunk, input.length - offset);
+            streamed.writeBytes(converter.convert(input, offset, length));
+            offset += length;
+        }
+
+        assertThat(streamed.toByteArray()).isEqualTo(expected);
+    }
+
+    private static byte[] wav(int encoding, int channels, int sampleRate, int bits, byte[] data) {
+        int blockAlign = channels * bits / 8;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes());
+        buffer.putInt(36 + data.length);
+        buffer.put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes());
+        buffer.putInt(16);
+        buffer.putShort((short) encoding);
+        buffer.putShort((short) channels);
+        buffer.putInt(sampleRate);
+        buffer.putInt(sampleRate * blockAlign);
+        buffer.putShort((short) blockAlign);
+        buffer.putShort((short) bits);
+        buffer.put("data".getBytes());
+        buffer.putInt(data.length);
+        buffer.put(data);
+        return buffer.array();
+    }
+
+    private static void writeInt24(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+    }
+}
@@ -16,13 +16,22 @@ import org.springframework.web.client.RestClient;
 
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -43,7 +52,7 @@ class YandexIamTokenProviderTest {
     }
 
     @Test
-    void cachesTokenAndRefreshesWhenTtlIsTooLow() {
+    void servesLowTtlTokenUntilExpiryWhileRefreshingInBackground() throws Exception {
         String firstExpiry = Instant.now().plusSeconds(70).toString();
         String secondExpiry = Instant.now().plusSeconds(3600).toString();
         iamServer.enqueue(iamTokenResponse("first-token", firstExpiry));
@@ -60,8 +69,219 @@ class YandexIamTokenProviderTest {
         );
 
         assertThat(provider.getToken()).isEqualTo("first-token");
+        long started = System.nanoTime();
+        assertThat(provider.getToken()).isEqualTo("first-token");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(250);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"second-token".equals(provider.getToken()) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
         assertThat(provider.getToken()).isEqualTo("second-token");
         assertThat(iamServer.getRequestCount()).isEqualTo(2);
+        provider.close();
+    }
+
+    @Test
+    void servesCachedTokenWhileRefreshingInBackground() throws Exception {
+        iamServer.enqueue(iamTokenResponse("first-token", Instant.now().plusSeconds(3600).toString()));
+        iamServer.enqueue(iamTokenResponse("second-token", Instant.now().plusSeconds(36000).toString())
+                .setBodyDelay(500, TimeUnit.MILLISECONDS));
+
+        SpeechKitProperties properties = basePropertiesWithSaKey();
+        properties.setTokenSkewSeconds(3600);
+        properties.setTokenRefreshAheadSeconds(0);
+        properties.setTokenMinTtlSeconds(0);
+
+        YandexIamTokenProvider provider = new YandexIamTokenProvider(
+                properties,
+                RestClient.builder().build(),
+                new ObjectMapper()
+        );
+
+        assertThat(provider.getToken()).isEqualTo("first-token");
+        iamServer.takeRequest(2, TimeUnit.SECONDS);
+        assertThat(iamServer.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+
+        long started = System.nanoTime();
+        assertThat(provider.getToken()).isEqualTo("first-token");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(250);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"second-token".equals(provider.getToken()) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(provider.getToken()).isEqualTo("second-token");
+        assertThat(iamServer.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void exchangeConsumesPresignedJwtAndDropsStaleOnes() throws Exception {
+        Instant start = Instant.now();
+        MutableClock clock = new MutableClock(start);
+        iamServer.enqueue(iamTokenResponse("token", start.plusSeconds(3600).toString()));
+
+        YandexIamTokenProvider provider = new YandexIamTokenProvider(
+                basePropertiesWithSaKey(),
+                RestClient.builder().build(),
+                new ObjectMapper(),
+                clock
+        );
+
+        provider.presignJwt();
+        assertThat(provider.getToken()).isEqualTo("token");
+        assertThat(provider.takePresignedJwt()).isNull();
+        assertThat(iamServer.takeRequest().getBody().readUtf8()).contains("\"jwt\"");
+
+        provider.presignJwt();
+        clock.set(start.plusSeconds(300));
+        assertThat(provider.takePresignedJwt()).isNull();
+    }
+
+    @Test
+    void servesStaleTokenDuringIamOutageUntilItExpires() throws Exception {
+        Instant start = Instant.now();
+        MutableClock clock = new MutableClock(start);
+        iamServer.enqueue(iamTokenResponse("cached-token", start.plusSeconds(100).toString()));
+        for (int i = 0; i < 4; i++) {
+            iamServer.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable"));
+        }
+
+        SpeechKitProperties properties = basePropertiesWithSaKey();
+        properties.setTokenSkewSeconds(0);
+        properties.setTokenMinTtlSeconds(120);
+        properties.setTokenRefreshRetryAttempts(1);
+
+        YandexIamTokenProvider provider = new YandexIamTokenProvider(
+                properties,
+                RestClient.builder().build(),
+                new ObjectMapper(),
+                clock
+        );
+
+        assertThat(provider.getToken()).isEqualTo("cached-token");
+        assertThat(provider.getToken()).isEqualTo("cached-token");
+        assertThat(iamServer.takeRequest(2, TimeUnit.SECONDS)).isNotNull();
+        assertThat(iamServer.takeRequest(2, TimeUnit.SECONDS)).isNotNull();
+        assertThat(provider.getToken()).isEqualTo("cached-token");
+
+        clock.set(start.plusSeconds(101));
+        assertThatThrownBy(provider::getToken)
+                .isInstanceOf(ApiException.class)
+                .satisfies(ex -> assertThat(((ApiException) ex).getCode()).isEqualTo("upstream_auth_temporary_error"));
+        provider.close();
+    }
+
+    @Test
+    void reusesPersistedTokenAcrossProviderInstances() {
+        iamServer.enqueue(iamTokenResponse("persisted-token", Instant.now().plusSeconds(3600).toString()));
+        Map<String, IamTokenStore.StoredToken> shared = new ConcurrentHashMap<>();
+        IamTokenStore store = new IamTokenStore() {
+            @Override
+            public Optional<StoredToken> load(String key) {
+                return Optional.ofNullable(shared.get(key));
+            }
+
+            @Override
+            public void save(String key, StoredToken token) {
+                shared.put(key, token);
+            }
+        };
+
+        SpeechKitProperties properties = basePropertiesWithSaKey();
+        YandexIamTokenProvider first = new YandexIamTokenProvider(
+                properties, properties.primaryAccount(), RestClient.builder().build(), new ObjectMapper(), Clock.systemUTC(), store);
+        assertThat(first.getToken()).isEqualTo("persisted-token");
+
+        YandexIamTokenProvider restarted = new YandexIamTokenProvider(
+                properties, properties.primaryAccount(), RestClient.builder().build(), new ObjectMapper(), Clock.systemUTC(), store);
+        assertThat(restarted.getToken()).isEqualTo("persisted-token");
+        assertThat(iamServer.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void keysPersistedMetadataTokenByAttachedServiceAccount() throws Exception {
+        String expiresAt = Instant.now().plusSeconds(3600).toString();
+        iamServer.enqueue(new MockResponse().setResponseCode(200).setBody("sa-one@folder"));
+        iamServer.enqueue(iamTokenResponse("token-one", expiresAt));
+        iamServer.enqueue(new MockResponse().setResponseCode(200).setBody("sa-two@folder"));
+        iamServer.enqueue(iamTokenResponse("token-two", expiresAt));
+        iamServer.enqueue(new MockResponse().setResponseCode(200).setBody("sa-one@folder"));
+        Map<String, IamTokenStore.StoredToken> shared = new ConcurrentHashMap<>();
+        IamTokenStore store = new IamTokenStore() {
+            @Override
+            public Optional<StoredToken> load(String key) {
+                return Optional.ofNullable(shared.get(key));
+            }
+
+            @Override
+            public void save(String key, StoredToken token) {
+                shared.put(key, token);
+            }
+        };
+        SpeechKitProperties properties = new SpeechKitProperties();
+        properties.setIamMetadataEnabled(true);
+        properties.setIamMetadataUrl(iamServer.url("/computeMetadata/v1/instance/service-accounts/default/token").toString());
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            YandexIamTokenProvider provider = new YandexIamTokenProvider(
+                    properties, properties.primaryAccount(), RestClient.builder().build(), new ObjectMapper(), Clock.systemUTC(), store);
+            tokens.add(provider.getToken());
+            provider.close();
+        }
+
+        assertThat(tokens).containsExactly("token-one", "token-two", "token-one");
+        assertThat(shared).containsOnlyKeys("metadata:sa-one@folder", "metadata:sa-two@folder");
+        assertThat(iamServer.getRequestCount()).isEqualTo(5);
+        assertThat(iamServer.takeRequest().getPath()).endsWith("/default/email");
+    }
+
+    @Test
+    void requestRefreshMakesOneBoundedAttemptAndWaitersFailFast() throws Exception {
+        iamServer.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable")
+                .setBodyDelay(300, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < 4; i++) {
+            iamServer.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable"));
+        }
+
+        SpeechKitProperties properties = basePropertiesWithSaKey();
+        properties.setTokenRefreshRetryAttempts(5);
+        properties.setTokenRefreshRetryBaseMillis(2000);
+        properties.setTokenRefreshRetryMaxMillis(5000);
+
+        YandexIamTokenProvider provider = new YandexIamTokenProvider(
+                properties,
+                RestClient.builder().build(),
+                new ObjectMapper()
+        );
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            long started = System.nanoTime();
+            Future<?> first = executor.submit(() -> getTokenWithin(provider, 2));
+            Thread.sleep(100);
+            Future<?> second = executor.submit(() -> getTokenWithin(provider, 2));
+
+            for (Future<?> future : List.of(first, second)) {
+                assertThat(future.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ApiException.class)
+                        .satisfies(ex -> assertThat(((ApiException) ex).getCode()).isEqualTo("upstream_auth_temporary_error"));
+            }
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(1500);
+            assertThat(iamServer.getRequestCount()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+            provider.close();
+        }
+    }
+
+    private static Object getTokenWithin(YandexIamTokenProvider provider, long seconds) {
+        try (RequestDeadline.Scope ignored = RequestDeadline.after(Duration.ofSeconds(seconds)).attach()) {
+            return provider.getToken();
+        } catch (ApiException ex) {
+            return ex;
+        }
     }
 
     @Test
@@ -105,6 +325,50 @@ class YandexIamTokenProviderTest {
         assertThat(iamServer.getRequestCount()).isEqualTo(1);
     }
 
+    @Test
+    void concurrentForceRefreshForSameRejectedTokenMakesOneIamCall() throws Exception {
+        String expiry = Instant.now().plusSeconds(3600).toString();
+        iamServer.enqueue(iamTokenResponse("revoked-token", expiry));
+        iamServer.enqueue(iamTokenResponse("fresh-token", expiry).setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+        SpeechKitProperties properties = basePropertiesWithSaKey();
+        properties.setTokenSkewSeconds(0);
+        properties.setTokenMinTtlSeconds(0);
+
+        YandexIamTokenProvider provider = new YandexIamTokenProvider(
+                properties,
+                RestClient.builder().build(),
+                new ObjectMapper()
+        );
+        String rejected = provider.getToken();
+
+        int workers = 32;
+        CountDownLatch ready = new CountDownLatch(workers);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<String>> futures = java.util.stream.IntStream.range(0, workers)
+                    .mapToObj(i -> executor.submit(() -> {
+                        ready.countDown();
+                        start.await();
+                        provider.forceRefresh(rejected);
+                        return provider.getToken();
+                    }))
+                    .toList();
+
+            ready.await();
+            start.countDown();
+
+            for (Future<String> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo("fresh-token");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(iamServer.getRequestCount()).isEqualTo(2);
+    }
+
     @Test
     void mapsInvalidCredentialsToConfigError() {
         iamServer.enqueue(new MockResponse().setResponseCode(400).setBody("bad request"));
@@ -202,6 +466,34 @@ class YandexIamTokenProviderTest {
                 .setBody("{\"iamToken\":\"" + token + "\",\"expiresAt\":\"" + expiresAt + "\"}");
     }
 
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
     private SpeechKitProperties basePropertiesWithSaKey() {
         SpeechKitProperties p = new SpeechKitProperties();
         p.setIamTokenUrl(iamServer.url("/iam/v1/tokens").toString());